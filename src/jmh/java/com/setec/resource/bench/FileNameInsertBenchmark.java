@@ -0,0 +1,122 @@
+package com.setec.resource.bench;
+
+import com.setec.resource.util.MediaUtil;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Inserts millions of file names into a table with a unique fileName index, random (v4)
+ * against time-ordered (v7) names. Each shot starts from an empty on-disk H2 database and
+ * reports the compacted storage size next to the time. Random keys touch leaf pages all over
+ * the index, time-ordered keys only append to its right edge. H2 stands in for Oracle, the
+ * locality effect carries over but absolute numbers and page fill do not.
+ * Larger tables: java -jar build/libs/*-jmh.jar FileNameInsert -p rows=5000000
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class FileNameInsertBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int COMMIT_EVERY = 10_000;
+
+    @Param({"random", "timeOrdered"})
+    String names;
+
+    @Param({"1000000"})
+    int rows;
+
+    private Path directory;
+
+    private Connection connection;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException, SQLException {
+        directory = Files.createTempDirectory("file-names-");
+        // the data source is used directly, the merged jmh jar keeps only one java.sql.Driver service entry
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:" + directory.resolve("bench").toAbsolutePath());
+        dataSource.setUser("sa");
+        connection = dataSource.getConnection();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE files (id BIGINT PRIMARY KEY, file_name VARCHAR(100) NOT NULL)");
+            statement.execute("CREATE UNIQUE INDEX uk_files_file_name ON files (file_name)");
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown(Storage storage) throws IOException, SQLException {
+
+        // compaction drops the superseded copy-on-write pages, what remains is the live table and index
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN COMPACT");
+        }
+        connection.close();
+        storage.storageBytes = Files.size(directory.resolve("bench.mv.db"));
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void insert() throws SQLException {
+
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO files (id, file_name) VALUES (?, ?)")) {
+            for (int i = 1; i <= rows; i++) {
+                UUID name = names.equals("random") ? UUID.randomUUID() : MediaUtil.uuidV7();
+                insert.setLong(1, i);
+                insert.setString(2, name + ".png");
+                insert.addBatch();
+                if (i % BATCH_SIZE == 0) {
+                    insert.executeBatch();
+                }
+                if (i % COMMIT_EVERY == 0) {
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+    }
+
+    // compacted database size after the shot, reported next to the time in the JSON results
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Storage {
+
+        public long storageBytes;
+    }
+}
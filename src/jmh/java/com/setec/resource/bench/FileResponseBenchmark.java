@@ -0,0 +1,81 @@
+package com.setec.resource.bench;
+
+import com.setec.resource.domain.File;
+import com.setec.resource.domain.FileStatus;
+import com.setec.resource.feature.file.FileResponseMapper;
+import com.setec.resource.feature.file.dto.FileResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of file rows to {@link FileResponse} and their JSON serialization, the bulk of
+ * the work behind a large file listing once the rows are loaded.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileResponseBenchmark {
+
+    private static final String VIEW_URI = "http://localhost:8080/api/v1/files/view/";
+
+    @Param({"100", "10000"})
+    int size;
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private List<File> files;
+
+    private List<FileResponse> responses;
+
+    @Setup
+    public void setup() {
+
+        files = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            File file = new File();
+            file.setId((long) i);
+            file.setFileName("0190a1b2-c3d4-7e5f-8a9b-" + String.format("%012d", i) + ".png");
+            file.setContentType("image/png");
+            file.setFolder("IMAGE");
+            file.setExtension("png");
+            file.setFileSize(48_000L + i);
+            file.setStatus(FileStatus.STORED);
+            files.add(file);
+        }
+
+        responses = map();
+    }
+
+    @Benchmark
+    public List<FileResponse> map() {
+        List<FileResponse> mapped = new ArrayList<>(files.size());
+        for (File file : files) {
+            mapped.add(FileResponseMapper.toFileResponse(file, VIEW_URI));
+        }
+        return mapped;
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return jsonMapper.writeValueAsBytes(responses);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerialize() {
+        return jsonMapper.writeValueAsBytes(map());
+    }
+}
@@ -0,0 +1,105 @@
+package com.setec.resource.bench;
+
+import com.setec.resource.base.BaseSpecification;
+import com.setec.resource.base.BaseSpecification.FilterDto;
+import com.setec.resource.base.BaseSpecification.SpecsDto;
+import com.setec.resource.domain.File;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernatePersistenceConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Predicate construction of {@link BaseSpecification#filter} for multi-spec filters,
+ * against the Hibernate criteria builder of an in-memory H2 unit mapping {@link File}.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilterSpecificationBenchmark {
+
+    @Param({"1", "10", "25", "50"})
+    int specs;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private CriteriaBuilder criteriaBuilder;
+
+    private final BaseSpecification<File> specification = new BaseSpecification<>();
+
+    private FilterDto filterDto;
+
+    @Setup
+    public void setup() {
+
+        entityManagerFactory = new HibernatePersistenceConfiguration("bench")
+                .jdbcUrl("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1")
+                .jdbcCredentials("sa", "")
+                .managedClass(File.class)
+                .createEntityManagerFactory();
+        criteriaBuilder = entityManagerFactory.getCriteriaBuilder();
+
+        // a mix of the operations clients send from the file listing
+        List<SpecsDto> specsDto = new ArrayList<>(specs);
+        for (int i = 0; i < specs; i++) {
+            SpecsDto spec = new SpecsDto();
+            switch (i % 4) {
+                case 0 -> {
+                    spec.setColumn("contentType");
+                    spec.setOperation(SpecsDto.Operation.EQUAL);
+                    spec.setValue("image/png");
+                }
+                case 1 -> {
+                    spec.setColumn("fileName");
+                    spec.setOperation(SpecsDto.Operation.LIKE);
+                    spec.setValue("Report" + i);
+                }
+                case 2 -> {
+                    spec.setColumn("extension");
+                    spec.setOperation(SpecsDto.Operation.IN);
+                    spec.setValue("png,jpg,webp,gif");
+                }
+                default -> {
+                    spec.setColumn("folder");
+                    spec.setOperation(SpecsDto.Operation.EQUAL);
+                    spec.setValue("IMAGE");
+                }
+            }
+            specsDto.add(spec);
+        }
+
+        filterDto = new FilterDto();
+        filterDto.setSpecsDto(specsDto);
+        filterDto.setGlobalOperator(FilterDto.GlobalOperator.AND);
+    }
+
+    @TearDown
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public Predicate toPredicate() {
+        CriteriaQuery<File> query = criteriaBuilder.createQuery(File.class);
+        Root<File> root = query.from(File.class);
+        return specification.filter(filterDto).toPredicate(root, query, criteriaBuilder);
+    }
+}
@@ -0,0 +1,36 @@
+package com.setec.resource.bench;
+
+import com.setec.resource.feature.file.stream.ByteRange;
+import com.setec.resource.feature.file.stream.HttpRanges;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Range header parsing as done for every view/download request.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RangeParsingBenchmark {
+
+    private static final long LENGTH = 1_073_741_824L;
+
+    @Param({"bytes=0-", "bytes=1048576-2097151", "bytes=-500", "bytes=0-99,200-299,1000-1999,5000-"})
+    String rangeHeader;
+
+    @Benchmark
+    public List<ByteRange> parse() {
+        return HttpRanges.parse(rangeHeader, LENGTH);
+    }
+}
@@ -0,0 +1,93 @@
+package com.setec.resource.bench;
+
+import com.setec.resource.feature.file.stream.FileRegionHttpMessageConverter;
+import com.setec.resource.feature.file.stream.FileRegion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copy of a cached file region into a response body, as done by the view endpoint:
+ * the channel transfer of {@link FileRegionHttpMessageConverter} against a plain
+ * stream copy through a heap buffer.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StreamCopyBenchmark {
+
+    @Param({"65536", "8388608"})
+    int regionSize;
+
+    private static final MediaType VIDEO_MP4 = MediaType.valueOf("video/mp4");
+
+    private final FileRegionHttpMessageConverter converter = new FileRegionHttpMessageConverter();
+
+    private final HttpOutputMessage outputMessage = new DiscardingOutputMessage();
+
+    private Path file;
+
+    private FileRegion region;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] content = new byte[regionSize * 2];
+        new Random(42).nextBytes(content);
+        file = Files.createTempFile("stream-copy-", ".bin");
+        Files.write(file, content);
+        region = new FileRegion(file, regionSize / 2, regionSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void channelTransfer() throws IOException {
+        converter.write(region, VIDEO_MP4, outputMessage);
+    }
+
+    @Benchmark
+    public long streamCopy() throws IOException {
+        try (InputStream inputStream = region.getInputStream()) {
+            return StreamUtils.copy(inputStream, OutputStream.nullOutputStream());
+        }
+    }
+
+    private static final class DiscardingOutputMessage implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        @Override
+        public OutputStream getBody() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.setec.resource.load;
+
+import com.setec.resource.feature.minio.S3Stub;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives {@code FileController} with a mix of small image views, video seeks and large uploads
+ * against {@link S3Stub} and an in-memory H2 database, then reports requests/s, p50/p99 latency
+ * and bytes/s per scenario. Run with {@code ./gradlew loadTest}, the knobs are {@code -Pload.*}
+ * properties (see the defaults below). The report is printed and written as JSON to
+ * {@code build/reports/load/results.json} so runs can be diffed before a release, the
+ * Prometheus scrape taken at the end goes next to it.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("loadtest")
+class FileEndpointLoadTest {
+
+    private static final S3Stub S3 = startStub();
+
+    private static final Duration WARMUP = Duration.ofSeconds(Long.getLong("load.warmup-seconds", 5));
+
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.duration-seconds", 20));
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 32);
+
+    // weights of image views, video seeks and uploads
+    private static final int[] MIX = parseMix(System.getProperty("load.mix", "70,25,5"));
+
+    private static final int IMAGE_SIZE = Integer.getInteger("load.image-bytes", 48 * 1024);
+
+    private static final int IMAGE_COUNT = Integer.getInteger("load.images", 200);
+
+    private static final int VIDEO_SIZE = Integer.getInteger("load.video-bytes", 32 * 1024 * 1024);
+
+    private static final int VIDEO_COUNT = Integer.getInteger("load.videos", 4);
+
+    private static final int SEEK_SIZE = Integer.getInteger("load.seek-bytes", 1024 * 1024);
+
+    private static final int UPLOAD_SIZE = Integer.getInteger("load.upload-bytes", 16 * 1024 * 1024);
+
+    private static final Path REPORT = Path.of(System.getProperty("load.report", "build/reports/load/results.json"));
+
+    private final JsonMapper jsonMapper = JsonMapper.builder().build();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @LocalServerPort
+    int port;
+
+    @DynamicPropertySource
+    static void storage(DynamicPropertyRegistry registry) {
+        registry.add("minio-url", S3::getUrl);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        S3.close();
+    }
+
+    @Test
+    void mixedWorkload() throws Exception {
+
+        byte[] image = randomBytes(IMAGE_SIZE);
+        byte[] video = randomBytes(VIDEO_SIZE);
+        byte[] upload = randomBytes(UPLOAD_SIZE);
+
+        List<String> images = new ArrayList<>();
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            images.add(upload("image-" + i + ".png", "image/png", image));
+        }
+        List<String> videos = new ArrayList<>();
+        for (int i = 0; i < VIDEO_COUNT; i++) {
+            videos.add(upload("video-" + i + ".mp4", "video/mp4", video));
+        }
+
+        ScenarioStats[] warmup = run(WARMUP, images, videos, upload);
+        ScenarioStats[] measured = run(DURATION, images, videos, upload);
+
+        List<Map<String, Object>> summaries = new ArrayList<>();
+        System.out.printf("%n%-12s %9s %7s %10s %9s %9s %12s%n", "scenario", "requests", "errors", "req/s", "p50 ms", "p99 ms", "MB/s");
+        for (ScenarioStats stats : measured) {
+            Map<String, Object> summary = stats.summary(DURATION.toMillis() / 1000.0);
+            summaries.add(summary);
+            System.out.printf("%-12s %9d %7d %10.2f %9.2f %9.2f %12.2f%n", summary.get("scenario"), summary.get("requests"),
+                    summary.get("errors"), summary.get("requestsPerSecond"), summary.get("p50Millis"),
+                    summary.get("p99Millis"), (Long) summary.get("bytesPerSecond") / 1_048_576.0);
+        }
+        System.out.printf("s3 stub requests: %d%n%n", S3.getRequests());
+
+        Files.createDirectories(REPORT.toAbsolutePath().getParent());
+        jsonMapper.writerWithDefaultPrettyPrinter().writeValue(REPORT.toFile(), Map.of(
+                "durationSeconds", DURATION.toSeconds(),
+                "concurrency", CONCURRENCY,
+                "s3LatencyMillis", Long.getLong("load.s3-latency-millis", 5),
+                "s3BytesPerSecond", Long.getLong("load.s3-bytes-per-second", 100L * 1024 * 1024),
+                "scenarios", summaries));
+
+        // the server side view of the same run: MinIO latency, stream bytes, repository timings
+        HttpResponse<Path> scrape = httpClient.send(HttpRequest.newBuilder(uri("/actuator/prometheus")).build(),
+                HttpResponse.BodyHandlers.ofFile(REPORT.toAbsolutePath().resolveSibling("metrics.txt")));
+        assertEquals(200, scrape.statusCode(), "prometheus scrape failed");
+
+        long errors = 0;
+        for (ScenarioStats stats : warmup) {
+            errors += stats.getErrors();
+        }
+        for (ScenarioStats stats : measured) {
+            errors += stats.getErrors();
+        }
+        assertEquals(0, errors, "requests failed during the run");
+    }
+
+    private ScenarioStats[] run(Duration duration, List<String> images, List<String> videos, byte[] upload) throws InterruptedException {
+
+        ScenarioStats[] stats = {new ScenarioStats("image-view"), new ScenarioStats("video-seek"), new ScenarioStats("upload")};
+        int total = MIX[0] + MIX[1] + MIX[2];
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENCY; i++) {
+                workers.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        int pick = random.nextInt(total);
+                        int scenario = pick < MIX[0] ? 0 : pick < MIX[0] + MIX[1] ? 1 : 2;
+                        long start = System.nanoTime();
+                        try {
+                            long bytes = switch (scenario) {
+                                case 0 -> view(images.get(random.nextInt(images.size())), null);
+                                case 1 -> {
+                                    long offset = random.nextLong(VIDEO_SIZE - SEEK_SIZE);
+                                    yield view(videos.get(random.nextInt(videos.size())),
+                                            "bytes=" + offset + "-" + (offset + SEEK_SIZE - 1));
+                                }
+                                default -> {
+                                    upload("upload.mp4", "video/mp4", upload);
+                                    yield upload.length;
+                                }
+                            };
+                            stats[scenario].record(System.nanoTime() - start, bytes);
+                        } catch (Exception e) {
+                            stats[scenario].error();
+                        }
+                    }
+                });
+            }
+        }
+
+        return stats;
+    }
+
+    private long view(String fileName, String range) throws IOException, InterruptedException {
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri("/api/v1/files/view/" + fileName)).GET();
+        if (range != null) {
+            request.header("Range", range);
+        }
+
+        HttpResponse<InputStream> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            long bytes = body.transferTo(OutputStream.nullOutputStream());
+            int expected = range != null ? 206 : 200;
+            if (response.statusCode() != expected) {
+                throw new IllegalStateException("GET " + fileName + " answered " + response.statusCode());
+            }
+            return bytes;
+        }
+    }
+
+    private String upload(String fileName, String contentType, byte[] content) throws IOException, InterruptedException {
+
+        String boundary = UUID.randomUUID().toString();
+        byte[] head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + fileName
+                + "\"\r\nContent-Type: " + contentType + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/v1/files"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, content, tail)))
+                .build();
+
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("upload answered " + response.statusCode() + ": " + response.body());
+        }
+        return jsonMapper.readTree(response.body()).path("name").asString();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + port + path);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        return bytes;
+    }
+
+    private static int[] parseMix(String mix) {
+        String[] weights = mix.split(",");
+        return new int[]{Integer.parseInt(weights[0].trim()), Integer.parseInt(weights[1].trim()), Integer.parseInt(weights[2].trim())};
+    }
+
+    private static S3Stub startStub() {
+        try {
+            return new S3Stub(Long.getLong("load.s3-latency-millis", 5), Long.getLong("load.s3-bytes-per-second", 100L * 1024 * 1024));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.setec.resource.load;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latencies, bytes and failures of one load scenario over the measured window.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+class ScenarioStats {
+
+    private final String name;
+
+    private long[] latencies = new long[1024];
+
+    private int count;
+
+    private long bytes;
+
+    private long errors;
+
+    ScenarioStats(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    synchronized void record(long latencyNanos, long transferred) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyNanos;
+        bytes += transferred;
+    }
+
+    synchronized void error() {
+        errors++;
+    }
+
+    synchronized long getErrors() {
+        return errors;
+    }
+
+    synchronized Map<String, Object> summary(double seconds) {
+
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("scenario", name);
+        summary.put("requests", count);
+        summary.put("errors", errors);
+        summary.put("requestsPerSecond", round(count / seconds));
+        summary.put("p50Millis", round(percentile(sorted, 0.50) / 1e6));
+        summary.put("p99Millis", round(percentile(sorted, 0.99) / 1e6));
+        summary.put("bytesPerSecond", Math.round(bytes / seconds));
+        return summary;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
@@ -4,6 +4,11 @@ import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.From;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.jpa.domain.Specification;
@@ -12,40 +17,54 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.lang.reflect.Field;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Service
 public class BaseSpecification<T> {
 
+    private static final char LIKE_ESCAPE = '\\';
+
+    // compiled once per entity class: column name -> its type and how values of that type are parsed
+    private final Map<Class<?>, Map<String, Column>> schemas = new ConcurrentHashMap<>();
+
+    // join paths validated against the metamodel, keyed by root entity and dotted path
+    private final Map<JoinKey, JoinPath> joinPaths = new ConcurrentHashMap<>();
+
     public Specification<T> filter(FilterDto filterDto) {
         return (root, query, criteriaBuilder) -> {
-            List<Predicate> predicates = new ArrayList<>();
 
             //if null or empty return all data
             if (filterDto==null|| filterDto.getSpecsDto() == null || filterDto.getSpecsDto().isEmpty()) {
                 return criteriaBuilder.conjunction(); // Return all data
             }
 
+            List<Predicate> predicates = new ArrayList<>(filterDto.getSpecsDto().size());
             for (SpecsDto specs : filterDto.getSpecsDto()) {
                 try {
                     if (specs.getJoinTable() != null) {
                         // Handle join table
-                        Join<Object, Object> join = getJoin(root, specs.getJoinTable());
-                        if (!isValidColumn(join.getJavaType(), specs.getColumn())) {
+                        JoinPath joinPath = getJoinPath(root, specs.getJoinTable());
+                        Column column = getSchema(joinPath.javaType()).get(specs.getColumn());
+                        if (column == null) {
                             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid column: " + specs.getColumn() + " in join table: " + specs.getJoinTable());
                         }
-                        predicates.add(createPredicate(join, criteriaBuilder, specs));
+                        predicates.add(createPredicate(getJoin(root, joinPath), criteriaBuilder, specs, column));
                     } else {
                         // Handle non-join table
-                        if (!isValidColumn(root.getJavaType(), specs.getColumn())) {
+                        Column column = getSchema(root.getJavaType()).get(specs.getColumn());
+                        if (column == null) {
                             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid column: " + specs.getColumn());
                         }
-                        predicates.add(createPredicate(root, criteriaBuilder, specs));
+                        predicates.add(createPredicate(root, criteriaBuilder, specs, column));
                     }
                 } catch (ResponseStatusException e) {
                     throw e; // Re-throw specific exception
@@ -63,207 +82,207 @@ public class BaseSpecification<T> {
         };
     }
 
-    // Validate if the column exists in the entity class
-    private boolean isValidColumn(Class<?> entityClass, String column) {
-        for (Field field : getAllFields(entityClass)) {
-            if (field.getName().equals(column)) {
-                return true;
+    // Columns of the entity class, including inherited fields, compiled on first use
+    private Map<String, Column> getSchema(Class<?> entityClass) {
+        return schemas.computeIfAbsent(entityClass, type -> {
+            Map<String, Column> columns = new HashMap<>();
+            while (type != null && type != Object.class) {
+                for (Field field : type.getDeclaredFields()) {
+                    columns.putIfAbsent(field.getName(), new Column(field.getName(), field.getType(), ValueType.of(field.getType())));
+                }
+                type = type.getSuperclass();
             }
-        }
-        return false;
+            return Map.copyOf(columns);
+        });
     }
 
-    // Get all fields from the entity class, including inherited fields
-    private List<Field> getAllFields(Class<?> entityClass) {
-        List<Field> fields = new ArrayList<>();
-        while (entityClass != null && entityClass != Object.class) {
-            fields.addAll(Arrays.asList(entityClass.getDeclaredFields()));
-            entityClass = entityClass.getSuperclass();
+    // Create a predicate based on the operation type and column type
+    @SuppressWarnings("unchecked")
+    private Predicate createPredicate(From<?, ?> from, CriteriaBuilder criteriaBuilder, SpecsDto specs, Column column) {
+
+        if (specs.getOperation() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid operation: " + specs.getOperation());
         }
-        return fields;
-    }
 
-    // Create a predicate based on the operation type and column type
-    private Predicate createPredicate(From<?, ?> from, CriteriaBuilder criteriaBuilder, SpecsDto specs) {
-        try {
-            if (!isValidOperation(specs.getOperation())) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid operation: " + specs.getOperation());
-            }
+        ValueType valueType = column.valueType();
+        String typeName = column.type().getSimpleName();
 
-            Field field = from.getJavaType().getDeclaredField(specs.getColumn());
-            Class<?> fieldType = field.getType();
+        switch (specs.getOperation()) {
+            case EQUAL:
+                if (valueType == ValueType.UNSUPPORTED) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported operation for column type: " + typeName);
+                }
+                return criteriaBuilder.equal(from.get(column.name()), valueType.parse(specs.getValue()));
+            case LIKE:
+                if (valueType != ValueType.STRING) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "LIKE operation is not supported for column type: " + typeName);
+                }
+                return criteriaBuilder.like(criteriaBuilder.lower(from.get(column.name())), "%" + specs.getValue().toLowerCase() + "%");
+            case STARTS_WITH:
+                // case sensitive and anchored, unlike LIKE this can use an index range scan on the column
+                if (valueType != ValueType.STRING) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "STARTS_WITH operation is not supported for column type: " + typeName);
+                }
+                return criteriaBuilder.like(from.get(column.name()), escapeLike(specs.getValue()) + "%", LIKE_ESCAPE);
+            case IN:
+                if (!valueType.isListable()) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "IN operation is not supported for column type: " + typeName);
+                }
+                return from.get(column.name()).in(valueType.parseAll(specs.getValue().split(",")));
+            case GREATER_THAN:
+                if (!valueType.isOrdered()) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "GREATER_THAN operation is not supported for column type: " + typeName);
+                }
+                return criteriaBuilder.greaterThan(from.get(column.name()), valueType.parse(specs.getValue()));
+            case LESS_THAN:
+                if (!valueType.isOrdered()) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "LESS_THAN operation is not supported for column type: " + typeName);
+                }
+                return criteriaBuilder.lessThan(from.get(column.name()), valueType.parse(specs.getValue()));
+            case BETWEEN:
+                String[] split = specs.getValue().split(",");
+                if (split.length != 2) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "BETWEEN operation requires two values");
+                }
+                if (!valueType.isOrdered()) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "BETWEEN operation is not supported for column type: " + typeName);
+                }
+                return criteriaBuilder.between(from.get(column.name()), valueType.parse(split[0]), valueType.parse(split[1]));
+            default:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported operation: " + specs.getOperation());
+        }
+    }
 
-            switch (specs.getOperation()) {
-                case EQUAL:
-                    return createEqualPredicate(from, criteriaBuilder, specs, fieldType);
-                case LIKE:
-                    if (fieldType == String.class) {
-                        return criteriaBuilder.like(criteriaBuilder.lower(from.get(specs.getColumn())), "%" + specs.getValue().toLowerCase() + "%");
-                    } else {
-                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "LIKE operation is not supported for column type: " + fieldType.getSimpleName());
-                    }
-                case IN:
-                    return createInPredicate(from, criteriaBuilder, specs, fieldType);
-                case GREATER_THAN:
-                    return createGreaterThanPredicate(from, criteriaBuilder, specs, fieldType);
-                case LESS_THAN:
-                    return createLessThanPredicate(from, criteriaBuilder, specs, fieldType);
-                case BETWEEN:
-                    return createBetweenPredicate(from, criteriaBuilder, specs, fieldType);
-                default:
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported operation: " + specs.getOperation());
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+                escaped.append(LIKE_ESCAPE);
             }
-        } catch (NoSuchFieldException e) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid column: " + specs.getColumn());
+            escaped.append(c);
         }
+        return escaped.toString();
     }
 
-    private boolean isValidOperation(SpecsDto.Operation operation) {
-        return Arrays.stream(SpecsDto.Operation.values()).anyMatch(op -> op == operation);
-    }
+    // Resolve the dotted join path once per root entity, only attribute lookups happen per query
+    private JoinPath getJoinPath(From<?, ?> root, String joinTable) {
 
-    private Predicate createEqualPredicate(From<?, ?> from, CriteriaBuilder criteriaBuilder, SpecsDto specs, Class<?> fieldType) {
-        if (fieldType == String.class) {
-            return criteriaBuilder.equal(from.get(specs.getColumn()), specs.getValue());
-        } else if (fieldType == Integer.class || fieldType == int.class) {
-            return criteriaBuilder.equal(from.get(specs.getColumn()), Integer.parseInt(specs.getValue()));
-        } else if (fieldType == Double.class || fieldType == double.class) {
-            return criteriaBuilder.equal(from.get(specs.getColumn()), Double.parseDouble(specs.getValue()));
-        } else if (fieldType == Boolean.class || fieldType == boolean.class) {
-            return criteriaBuilder.equal(from.get(specs.getColumn()), Boolean.parseBoolean(specs.getValue()));
-        } else if (fieldType == LocalDate.class) {
-            return criteriaBuilder.equal(from.get(specs.getColumn()), LocalDate.parse(specs.getValue()));
-        } else if (fieldType == LocalTime.class) {
-            return criteriaBuilder.equal(from.get(specs.getColumn()), LocalTime.parse(specs.getValue()));
-        } else if (fieldType == LocalDateTime.class) {
-            return criteriaBuilder.equal(from.get(specs.getColumn()), LocalDateTime.parse(specs.getValue()));
-        } else {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported operation for column type: " + fieldType.getSimpleName());
+        JoinKey key = new JoinKey(root.getJavaType(), joinTable);
+        JoinPath joinPath = joinPaths.get(key);
+        if (joinPath != null) {
+            return joinPath;
         }
-    }
 
-    private Predicate createInPredicate(From<?, ?> from, CriteriaBuilder criteriaBuilder, SpecsDto specs, Class<?> fieldType) {
-        if (fieldType == String.class) {
-            return from.get(specs.getColumn()).in(Arrays.asList(specs.getValue().split(",")));
-        } else if (fieldType == Integer.class || fieldType == int.class) {
-            return from.get(specs.getColumn()).in(parseIntegers(specs.getValue()));
-        } else if (fieldType == Double.class || fieldType == double.class) {
-            return from.get(specs.getColumn()).in(parseDoubles(specs.getValue()));
-        } else if (fieldType == LocalDate.class) {
-            return from.get(specs.getColumn()).in(parseLocalDates(specs.getValue()));
-        } else if (fieldType == LocalTime.class) {
-            return from.get(specs.getColumn()).in(parseLocalTimes(specs.getValue()));
-        } else if (fieldType == LocalDateTime.class) {
-            return from.get(specs.getColumn()).in(parseLocalDateTimes(specs.getValue()));
-        } else {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "IN operation is not supported for column type: " + fieldType.getSimpleName());
+        if (!(root.getModel() instanceof ManagedType<?> managedType)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid join table: " + joinTable);
         }
-    }
 
-    private Predicate createGreaterThanPredicate(From<?, ?> from, CriteriaBuilder criteriaBuilder, SpecsDto specs, Class<?> fieldType) {
-        if (fieldType == Integer.class || fieldType == int.class) {
-            return criteriaBuilder.greaterThan(from.get(specs.getColumn()), Integer.parseInt(specs.getValue()));
-        } else if (fieldType == Double.class || fieldType == double.class) {
-            return criteriaBuilder.greaterThan(from.get(specs.getColumn()), Double.parseDouble(specs.getValue()));
-        } else if (fieldType == LocalDate.class) {
-            return criteriaBuilder.greaterThan(from.get(specs.getColumn()), LocalDate.parse(specs.getValue()));
-        } else if (fieldType == LocalTime.class) {
-            return criteriaBuilder.greaterThan(from.get(specs.getColumn()), LocalTime.parse(specs.getValue()));
-        } else if (fieldType == LocalDateTime.class) {
-            return criteriaBuilder.greaterThan(from.get(specs.getColumn()), LocalDateTime.parse(specs.getValue()));
-        } else {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "GREATER_THAN operation is not supported for column type: " + fieldType.getSimpleName());
+        String[] segments = joinTable.split("\\.");
+        ManagedType<?> current = managedType;
+        for (String segment : segments) {
+            Attribute<?, ?> attribute;
+            try {
+                attribute = current.getAttribute(segment);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid join table: " + joinTable, e);
+            }
+
+            Type<?> target = attribute instanceof PluralAttribute<?, ?, ?> plural
+                    ? plural.getElementType()
+                    : ((SingularAttribute<?, ?>) attribute).getType();
+            if (!(target instanceof ManagedType<?> targetType)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid join table: " + joinTable);
+            }
+            current = targetType;
         }
+
+        joinPath = new JoinPath(segments, current.getJavaType());
+        joinPaths.put(key, joinPath);
+        return joinPath;
     }
 
-    private Predicate createLessThanPredicate(From<?, ?> from, CriteriaBuilder criteriaBuilder, SpecsDto specs, Class<?> fieldType) {
-        if (fieldType == Integer.class || fieldType == int.class) {
-            return criteriaBuilder.lessThan(from.get(specs.getColumn()), Integer.parseInt(specs.getValue()));
-        } else if (fieldType == Double.class || fieldType == double.class) {
-            return criteriaBuilder.lessThan(from.get(specs.getColumn()), Double.parseDouble(specs.getValue()));
-        } else if (fieldType == LocalDate.class) {
-            return criteriaBuilder.lessThan(from.get(specs.getColumn()), LocalDate.parse(specs.getValue()));
-        } else if (fieldType == LocalTime.class) {
-            return criteriaBuilder.lessThan(from.get(specs.getColumn()), LocalTime.parse(specs.getValue()));
-        } else if (fieldType == LocalDateTime.class) {
-            return criteriaBuilder.lessThan(from.get(specs.getColumn()), LocalDateTime.parse(specs.getValue()));
-        } else {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "LESS_THAN operation is not supported for column type: " + fieldType.getSimpleName());
+    private Join<Object, Object> getJoin(From<?, ?> root, JoinPath joinPath) {
+        String[] segments = joinPath.segments();
+        Join<Object, Object> join = root.join(segments[0]);
+        for (int i = 1; i < segments.length; i++) {
+            join = join.join(segments[i]);
         }
+        return join;
     }
 
-    private Predicate createBetweenPredicate(From<?, ?> from, CriteriaBuilder criteriaBuilder, SpecsDto specs, Class<?> fieldType) {
-        String[] split = specs.getValue().split(",");
-        if (split.length != 2) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "BETWEEN operation requires two values");
-        }
+    private record Column(String name, Class<?> type, ValueType valueType) {
+    }
 
-        if (fieldType == Integer.class || fieldType == int.class) {
-            return criteriaBuilder.between(from.get(specs.getColumn()), Integer.parseInt(split[0]), Integer.parseInt(split[1]));
-        } else if (fieldType == Double.class || fieldType == double.class) {
-            return criteriaBuilder.between(from.get(specs.getColumn()), Double.parseDouble(split[0]), Double.parseDouble(split[1]));
-        } else if (fieldType == LocalDate.class) {
-            return criteriaBuilder.between(from.get(specs.getColumn()), LocalDate.parse(split[0]), LocalDate.parse(split[1]));
-        } else if (fieldType == LocalTime.class) {
-            return criteriaBuilder.between(from.get(specs.getColumn()), LocalTime.parse(split[0]), LocalTime.parse(split[1]));
-        } else if (fieldType == LocalDateTime.class) {
-            return criteriaBuilder.between(from.get(specs.getColumn()), LocalDateTime.parse(split[0]), LocalDateTime.parse(split[1]));
-        } else {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "BETWEEN operation is not supported for column type: " + fieldType.getSimpleName());
-        }
+    private record JoinKey(Class<?> rootType, String path) {
     }
 
-    private Join<Object, Object> getJoin(From<?, ?> root, String joinTable) {
-        try {
-            String[] joinTableSplit = joinTable.split("\\.");
-            Join<Object, Object> join = root.join(joinTableSplit[0]);
-            for (int i = 1; i < joinTableSplit.length; i++) {
-                join = join.join(joinTableSplit[i]);
-            }
-            return join;
-        } catch (IllegalArgumentException e) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid join table: " + joinTable, e);
-        }
+    private record JoinPath(String[] segments, Class<?> javaType) {
     }
 
-    private List<Integer> parseIntegers(String value) {
-        List<Integer> result = new ArrayList<>();
-        for (String val : value.split(",")) {
-            result.add(Integer.parseInt(val));
+    // Supported column types with their value parser
+    @SuppressWarnings("rawtypes")
+    private enum ValueType {
+        STRING(value -> value),
+        INTEGER(Integer::parseInt),
+        LONG(Long::parseLong),
+        DOUBLE(Double::parseDouble),
+        BOOLEAN(Boolean::parseBoolean),
+        LOCAL_DATE(LocalDate::parse),
+        LOCAL_TIME(LocalTime::parse),
+        LOCAL_DATE_TIME(LocalDateTime::parse),
+        INSTANT(Instant::parse),
+        UNSUPPORTED(null);
+
+        private final Function<String, Comparable> parser;
+
+        ValueType(Function<String, Comparable> parser) {
+            this.parser = parser;
         }
-        return result;
-    }
 
-    private List<Double> parseDoubles(String value) {
-        List<Double> result = new ArrayList<>();
-        for (String val : value.split(",")) {
-            result.add(Double.parseDouble(val));
+        static ValueType of(Class<?> type) {
+            if (type == String.class) {
+                return STRING;
+            } else if (type == Integer.class || type == int.class) {
+                return INTEGER;
+            } else if (type == Long.class || type == long.class) {
+                return LONG;
+            } else if (type == Double.class || type == double.class) {
+                return DOUBLE;
+            } else if (type == Boolean.class || type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == LocalDate.class) {
+                return LOCAL_DATE;
+            } else if (type == LocalTime.class) {
+                return LOCAL_TIME;
+            } else if (type == LocalDateTime.class) {
+                return LOCAL_DATE_TIME;
+            } else if (type == Instant.class) {
+                return INSTANT;
+            }
+            return UNSUPPORTED;
         }
-        return result;
-    }
 
-    private List<LocalDate> parseLocalDates(String value) {
-        List<LocalDate> result = new ArrayList<>();
-        for (String val : value.split(",")) {
-            result.add(LocalDate.parse(val));
+        // GREATER_THAN, LESS_THAN and BETWEEN
+        boolean isOrdered() {
+            return this != STRING && this != BOOLEAN && this != UNSUPPORTED;
         }
-        return result;
-    }
 
-    private List<LocalTime> parseLocalTimes(String value) {
-        List<LocalTime> result = new ArrayList<>();
-        for (String val : value.split(",")) {
-            result.add(LocalTime.parse(val));
+        boolean isListable() {
+            return this != BOOLEAN && this != UNSUPPORTED;
         }
-        return result;
-    }
 
-    private List<LocalDateTime> parseLocalDateTimes(String value) {
-        List<LocalDateTime> result = new ArrayList<>();
-        for (String val : value.split(",")) {
-            result.add(LocalDateTime.parse(val));
+        Comparable parse(String value) {
+            return parser.apply(value);
+        }
+
+        List<Comparable> parseAll(String[] values) {
+            List<Comparable> result = new ArrayList<>(values.length);
+            for (String value : values) {
+                result.add(parser.apply(value));
+            }
+            return result;
         }
-        return result;
     }
 
     @Getter
@@ -275,7 +294,8 @@ public class BaseSpecification<T> {
         private Operation operation;
 
         public enum Operation {
-            EQUAL, LIKE, IN, GREATER_THAN, LESS_THAN, BETWEEN
+            // LIKE matches anywhere ignoring case and scans, STARTS_WITH is the index friendly prefix match
+            EQUAL, LIKE, STARTS_WITH, IN, GREATER_THAN, LESS_THAN, BETWEEN
         }
     }
 
@@ -1,7 +1,16 @@
 package com.setec.resource.config;
 
+import com.setec.resource.feature.cache.BlockCacheProperties;
+import com.setec.resource.feature.image.MediaImageProperties;
+import com.setec.resource.feature.minio.MinioProperties;
+import com.setec.resource.feature.spool.SpoolProperties;
+import org.springframework.boot.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
@@ -11,4 +20,61 @@ public class AppConfig {
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
+
+    // bounded fan-out for object writes of batch uploads
+    @Bean
+    public AsyncTaskExecutor uploadExecutor(MinioProperties minioProperties, Environment environment) {
+        return boundedExecutor("upload-", minioProperties.getUpload().getBatchConcurrency(), environment);
+    }
+
+    // background writes of spooled uploads to MinIO
+    @Bean
+    public AsyncTaskExecutor spoolExecutor(SpoolProperties spoolProperties, Environment environment) {
+        return boundedExecutor("spool-", spoolProperties.getConcurrency(), environment);
+    }
+
+    // read-ahead fetches of the block cache
+    @Bean
+    public AsyncTaskExecutor blockExecutor(BlockCacheProperties blockCacheProperties, Environment environment) {
+        return boundedExecutor("block-", blockCacheProperties.getPrefetchConcurrency(), environment);
+    }
+
+    // hedged reads and replica writes of the replicated backend, unbounded so a backup request never
+    // queues behind the slow call it replaces, each endpoint still caps its calls with its own MinioCallLimiter
+    @Bean
+    public AsyncTaskExecutor replicaExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("replica-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    // renders image variants, a full queue rejects instead of piling up decoded images
+    // CPU bound work, so it stays on platform threads in virtual thread mode too
+    @Bean
+    public ThreadPoolTaskExecutor imageExecutor(MediaImageProperties mediaImageProperties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(mediaImageProperties.getWorkers());
+        executor.setMaxPoolSize(mediaImageProperties.getWorkers());
+        executor.setQueueCapacity(mediaImageProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("image-");
+        executor.initialize();
+        return executor;
+    }
+
+    // blocking I/O pools switch to virtual threads when the app runs on them
+    private static AsyncTaskExecutor boundedExecutor(String threadNamePrefix, int concurrency, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(concurrency);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.initialize();
+        return executor;
+    }
 }
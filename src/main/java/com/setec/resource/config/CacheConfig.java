@@ -0,0 +1,13 @@
+package com.setec.resource.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    // File rows by fileName, rows never change after upload so only writes and deletes evict
+    public static final String FILES_CACHE = "files";
+
+}
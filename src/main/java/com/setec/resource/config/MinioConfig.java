@@ -2,13 +2,17 @@ package com.setec.resource.config;
 
 
 import com.setec.resource.feature.minio.MinioProperties;
+import com.setec.resource.feature.minio.MultipartMinioClient;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "minio", matchIfMissing = true)
 public class MinioConfig {
 
 
@@ -16,9 +20,26 @@ public class MinioConfig {
 
     @Bean
     public MinioClient minioClient() {
+        return newMinioClient(minioProperties);
+    }
+
+    @Bean
+    public MultipartMinioClient multipartMinioClient() {
+        return newMultipartMinioClient(minioProperties);
+    }
+
+    // also used for every endpoint of the replicated backend
+    public static MinioClient newMinioClient(MinioProperties minioProperties) {
         return MinioClient.builder()
                 .endpoint(minioProperties.getUrl())
                 .credentials(minioProperties.getAccessKey(), minioProperties.getSecretKey())
                 .build();
     }
+
+    public static MultipartMinioClient newMultipartMinioClient(MinioProperties minioProperties) {
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(minioProperties.getUrl())
+                .credentials(minioProperties.getAccessKey(), minioProperties.getSecretKey())
+                .build());
+    }
 }
\ No newline at end of file
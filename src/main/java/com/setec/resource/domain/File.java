@@ -5,15 +5,30 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
+
 @Setter
 @Getter
 @NoArgsConstructor
-@Table(name = "files")
+@Table(name = "files", indexes = {
+        @Index(name = "idx_files_checksum", columnList = "checksum"),
+        @Index(name = "idx_files_object_key", columnList = "objectKey"),
+        // filter and sort columns of POST /files/search
+        @Index(name = "idx_files_content_type", columnList = "contentType"),
+        @Index(name = "idx_files_folder", columnList = "folder"),
+        @Index(name = "idx_files_extension", columnList = "extension"),
+        @Index(name = "idx_files_file_size", columnList = "fileSize"),
+        @Index(name = "idx_files_uploaded_at", columnList = "uploadedAt"),
+        // pending rows of one instance's spool
+        @Index(name = "idx_files_spool_node", columnList = "spoolNode")
+})
 @Entity
 public class File{
 
+    // pooled sequence instead of IDENTITY so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "files_seq")
+    @SequenceGenerator(name = "files_seq", sequenceName = "files_seq", allocationSize = 50)
     Long id;
 
     @Column(nullable = false,unique = true,length = 100)
@@ -27,4 +42,28 @@ public class File{
 
     String extension;
 
+    // hex SHA-256 of the content, null for files assembled from chunked uploads
+    @Column(length = 64)
+    String checksum;
+
+    Instant uploadedAt;
+
+    // deduplicated uploads point at the object of the first upload with the same content
+    @Column(length = 200)
+    String objectKey;
+
+    // null for rows stored before uploads could be spooled, those are stored
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    FileStatus status;
+
+    // media.spool.node of the instance whose local spool holds a PENDING row's content
+    @Column(length = 100)
+    String spoolNode;
+
+    // rows stored before objectKey existed keep their object under folder/fileName
+    public String getObjectName() {
+        return objectKey != null ? objectKey : folder + "/" + fileName;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.setec.resource.domain;
+
+public enum FileStatus {
+    // content is only in the local spool, waiting to be written to MinIO
+    PENDING,
+    STORED
+}
@@ -0,0 +1,48 @@
+package com.setec.resource.domain;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Setter
+@Getter
+@NoArgsConstructor
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_sessions_expires_at", columnList = "expiresAt")
+})
+@Entity
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    String id;
+
+    // MinIO multipart upload id, the parts themselves are tracked by MinIO
+    @Column(nullable = false)
+    String uploadId;
+
+    @Column(nullable = false, length = 100)
+    String fileName;
+
+    String contentType;
+
+    String folder;
+
+    String extension;
+
+    Long fileSize;
+
+    Long chunkSize;
+
+    Integer totalChunks;
+
+    LocalDateTime createdAt;
+
+    // moved forward by every chunk, expired sessions are aborted by UploadServiceImpl,
+    // null for sessions created before expiry existed, those expire by createdAt
+    LocalDateTime expiresAt;
+
+}
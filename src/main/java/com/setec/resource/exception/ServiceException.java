@@ -21,7 +21,9 @@ public class ServiceException {
         BasedErrorResponse basedErrorResponse = new BasedErrorResponse();
         basedErrorResponse.setError(basedError);
 
+        // keeps headers such as Content-Range on 416
         return ResponseEntity.status(ex.getStatusCode())
+                .headers(ex.getHeaders())
                 .body(basedErrorResponse);
     }
 
@@ -0,0 +1,23 @@
+package com.setec.resource.feature.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "media.block-cache")
+public class BlockCacheProperties {
+    private boolean enabled;
+    // objects are fetched from MinIO in aligned blocks of this size
+    private DataSize blockSize = DataSize.ofMegabytes(2);
+    // off-heap bytes held by cached blocks, keep -XX:MaxDirectMemorySize above it
+    private DataSize maxSize = DataSize.ofMegabytes(512);
+    // blocks fetched ahead of a player that reads sequentially
+    private int readAhead = 2;
+    // block fetches running in the background at once
+    private int prefetchConcurrency = 4;
+}
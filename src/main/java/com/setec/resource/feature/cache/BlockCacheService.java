@@ -0,0 +1,56 @@
+package com.setec.resource.feature.cache;
+
+import com.setec.resource.feature.cache.dto.BlockStatsResponse;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Off-heap cache of fixed size, aligned object blocks for ranged reads, with read-ahead for sequential playback
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public interface BlockCacheService {
+
+    /**
+     * check whether ranged reads go through the block cache
+     *
+     * @return true when the block cache is enabled
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    boolean isEnabled();
+
+    /**
+     * read a byte range of an object, blocks are fetched from MinIO on a miss
+     *
+     * @param objectName is the folder name and filename
+     * @param objectSize is the full object size in bytes
+     * @param start      is the first byte of the range
+     * @param length     is the number of bytes in the range
+     * @return {@link InputStream} over the range, blocks are loaded as it is read
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    InputStream getRange(String objectName, long objectSize, long start, long length);
+
+    /**
+     * drop all cached blocks of an object
+     *
+     * @param objectName is the folder name and filename
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void evict(String objectName);
+
+    /**
+     * get block hit statistics of the most requested objects
+     *
+     * @param limit is the maximum number of objects returned
+     * @return {@link List<BlockStatsResponse>} ordered by block requests
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    List<BlockStatsResponse> getObjectStats(int limit);
+}
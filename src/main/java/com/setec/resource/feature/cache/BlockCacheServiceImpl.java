@@ -0,0 +1,296 @@
+package com.setec.resource.feature.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.setec.resource.feature.cache.dto.BlockStatsResponse;
+import com.setec.resource.feature.storage.StorageService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@Slf4j
+public class BlockCacheServiceImpl implements BlockCacheService, MeterBinder {
+
+    private final StorageService storageService;
+
+    private final BlockCacheProperties blockCacheProperties;
+
+    private final AsyncTaskExecutor blockExecutor;
+
+    private final int blockSize;
+
+    // read-only direct buffers, weighed in bytes so the cap is an off-heap size
+    private final AsyncCache<BlockKey, ByteBuffer> blocks;
+
+    // per object hit counters and the last block served, for read-ahead
+    private final Cache<String, ObjectAccess> objects;
+
+    private final AtomicInteger prefetching = new AtomicInteger();
+
+    private final AtomicLong fetches = new AtomicLong();
+
+    private final AtomicLong prefetches = new AtomicLong();
+
+    public BlockCacheServiceImpl(StorageService storageService,
+                                 BlockCacheProperties blockCacheProperties,
+                                 @Qualifier("blockExecutor") AsyncTaskExecutor blockExecutor) {
+        this.storageService = storageService;
+        this.blockCacheProperties = blockCacheProperties;
+        this.blockExecutor = blockExecutor;
+        this.blockSize = (int) blockCacheProperties.getBlockSize().toBytes();
+
+        this.blocks = Caffeine.newBuilder()
+                .maximumWeight(blockCacheProperties.getMaxSize().toBytes())
+                .weigher((BlockKey key, ByteBuffer block) -> block.capacity())
+                .recordStats()
+                .buildAsync();
+
+        this.objects = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return blockCacheProperties.isEnabled();
+    }
+
+    @Override
+    public InputStream getRange(String objectName, long objectSize, long start, long length) {
+
+        ObjectAccess access = objects.get(objectName, key -> new ObjectAccess());
+
+        return new BlockInputStream(objectName, objectSize, start, length, access);
+    }
+
+    @Override
+    public void evict(String objectName) {
+        blocks.asMap().keySet().removeIf(key -> key.objectName().equals(objectName));
+        objects.invalidate(objectName);
+    }
+
+    @Override
+    public List<BlockStatsResponse> getObjectStats(int limit) {
+        return objects.asMap().entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> -(entry.getValue().hits.get() + entry.getValue().misses.get())))
+                .limit(limit)
+                .map(entry -> {
+                    long hits = entry.getValue().hits.get();
+                    long misses = entry.getValue().misses.get();
+                    return BlockStatsResponse.builder()
+                            .objectName(entry.getKey())
+                            .hits(hits)
+                            .misses(misses)
+                            .hitRate(hits + misses == 0 ? 0 : (double) hits / (hits + misses))
+                            .build();
+                })
+                .toList();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // same tag keys as the Spring managed caches, Prometheus rejects a metric name registered with other keys
+        CaffeineCacheMetrics.monitor(registry, blocks, "media-blocks", Tags.of("cache.manager", "media", "name", "media-blocks"));
+        FunctionCounter.builder("media.blocks.fetches", fetches, AtomicLong::get)
+                .description("Block requests sent to MinIO")
+                .register(registry);
+        FunctionCounter.builder("media.blocks.prefetches", prefetches, AtomicLong::get)
+                .description("Blocks fetched ahead of sequential readers")
+                .register(registry);
+    }
+
+    private ByteBuffer getBlock(String objectName, long objectSize, long index, ObjectAccess access) throws IOException {
+
+        BlockKey key = new BlockKey(objectName, index);
+
+        CompletableFuture<ByteBuffer> cached = blocks.getIfPresent(key);
+        if (cached != null) {
+            access.hits.incrementAndGet();
+            return join(cached);
+        }
+        access.misses.incrementAndGet();
+
+        // the first reader fetches, concurrent readers of the same block wait on its future
+        CompletableFuture<ByteBuffer> loading = new CompletableFuture<>();
+        CompletableFuture<ByteBuffer> prior = blocks.asMap().putIfAbsent(key, loading);
+        if (prior != null) {
+            return join(prior);
+        }
+
+        load(key, objectSize, loading);
+        return join(loading);
+    }
+
+    private void prefetch(String objectName, long objectSize, long fromBlock, int count) {
+
+        long blockCount = (objectSize + blockSize - 1) / blockSize;
+
+        for (long index = fromBlock; index < Math.min(fromBlock + count, blockCount); index++) {
+            BlockKey key = new BlockKey(objectName, index);
+
+            // background fetches are best effort, skipped rather than queued when the pool is busy
+            if (prefetching.get() >= blockCacheProperties.getPrefetchConcurrency() || blocks.asMap().containsKey(key)) {
+                continue;
+            }
+
+            CompletableFuture<ByteBuffer> loading = new CompletableFuture<>();
+            if (blocks.asMap().putIfAbsent(key, loading) != null) {
+                continue;
+            }
+
+            prefetching.incrementAndGet();
+            prefetches.incrementAndGet();
+            try {
+                blockExecutor.execute(() -> {
+                    try {
+                        load(key, objectSize, loading);
+                    } finally {
+                        prefetching.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                prefetching.decrementAndGet();
+                loading.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void load(BlockKey key, long objectSize, CompletableFuture<ByteBuffer> loading) {
+
+        long offset = key.index() * blockSize;
+        int length = (int) Math.min(blockSize, objectSize - offset);
+
+        fetches.incrementAndGet();
+        try (InputStream inputStream = storageService.getFile(key.objectName(), offset, length);
+             ReadableByteChannel channel = Channels.newChannel(inputStream)) {
+
+            ByteBuffer block = ByteBuffer.allocateDirect(length);
+            while (block.hasRemaining() && channel.read(block) >= 0) {
+                // fill the whole block
+            }
+            if (block.hasRemaining()) {
+                throw new IOException("Object ended before block " + key.index() + " was complete");
+            }
+            block.flip();
+
+            loading.complete(block.asReadOnlyBuffer());
+        } catch (Exception e) {
+            // failed futures are dropped by the cache so the next reader retries
+            loading.completeExceptionally(e);
+        }
+    }
+
+    private static ByteBuffer join(CompletableFuture<ByteBuffer> future) throws IOException {
+        try {
+            // every reader gets its own position and limit
+            return future.join().duplicate();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private class BlockInputStream extends InputStream {
+
+        private final String objectName;
+
+        private final long objectSize;
+
+        private final ObjectAccess access;
+
+        private long position;
+
+        private final long end;
+
+        private ByteBuffer current;
+
+        BlockInputStream(String objectName, long objectSize, long start, long length, ObjectAccess access) {
+            this.objectName = objectName;
+            this.objectSize = objectSize;
+            this.access = access;
+            this.position = start;
+            this.end = start + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+
+            if (current == null || !current.hasRemaining()) {
+                long index = position / blockSize;
+
+                // reading on from where this or an earlier request stopped counts as playback
+                long previous = access.lastBlock;
+                access.lastBlock = index;
+                if (index == previous || index == previous + 1) {
+                    prefetch(objectName, objectSize, index + 1, blockCacheProperties.getReadAhead());
+                }
+
+                current = getBlock(objectName, objectSize, index, access);
+                current.position((int) (position - index * blockSize));
+            }
+
+            int n = (int) Math.min(Math.min(len, current.remaining()), end - position);
+            current.get(b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            current = null;
+            return skipped;
+        }
+    }
+
+    private record BlockKey(String objectName, long index) {
+    }
+
+    private static class ObjectAccess {
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong misses = new AtomicLong();
+
+        private volatile long lastBlock = -2;
+    }
+}
@@ -0,0 +1,24 @@
+package com.setec.resource.feature.cache;
+
+import com.setec.resource.feature.cache.dto.BlockStatsResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Read-only view of the media caches, for tuning block size and read-ahead.
+ */
+@RestController
+@RequestMapping("/api/v1/cache")
+@RequiredArgsConstructor
+public class CacheController {
+
+    private final BlockCacheService blockCacheService;
+
+    // objects with the most block requests first
+    @GetMapping("/blocks")
+    List<BlockStatsResponse> getBlockStats(@RequestParam(defaultValue = "20") int limit) {
+        return blockCacheService.getObjectStats(Math.min(limit, 1000));
+    }
+}
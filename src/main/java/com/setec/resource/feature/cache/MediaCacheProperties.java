@@ -0,0 +1,20 @@
+package com.setec.resource.feature.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "media.cache")
+public class MediaCacheProperties {
+    private boolean enabled;
+    private String directory;
+    // total bytes kept on local disk
+    private DataSize maxSize = DataSize.ofGigabytes(2);
+    // larger objects (long videos) are always streamed from MinIO
+    private DataSize maxObjectSize = DataSize.ofMegabytes(50);
+}
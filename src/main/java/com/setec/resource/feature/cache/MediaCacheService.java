@@ -0,0 +1,43 @@
+package com.setec.resource.feature.cache;
+
+import java.nio.file.Path;
+
+/**
+ * Read-through local disk cache for objects stored in MinIO
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public interface MediaCacheService {
+
+    /**
+     * check whether an object of this size is served through the cache
+     *
+     * @param fileSize is the object size in bytes
+     * @return true when the cache is enabled and the object fits in it
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    boolean isCacheable(long fileSize);
+
+    /**
+     * get the local copy of an object, loading it from MinIO on a miss
+     *
+     * @param objectName is the folder name and filename
+     * @param fileSize   is the object size in bytes
+     * @return {@link Path} of the cached file
+     * @throws Exception when the object cannot be loaded
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    Path getFile(String objectName, long fileSize) throws Exception;
+
+    /**
+     * remove an object from the cache
+     *
+     * @param objectName is the folder name and filename
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void evict(String objectName);
+}
@@ -0,0 +1,180 @@
+package com.setec.resource.feature.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.setec.resource.feature.storage.StorageService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class MediaCacheServiceImpl implements MediaCacheService, MeterBinder {
+
+    private static final String TEMP_DIR = ".tmp";
+
+    // evicted files stay on disk a little longer so a request that was just handed the path can still open it
+    private static final Executor DELETE_EXECUTOR = CompletableFuture.delayedExecutor(30, TimeUnit.SECONDS);
+
+    private final StorageService storageService;
+
+    private final MediaCacheProperties mediaCacheProperties;
+
+    private final AsyncCache<String, CachedObject> cache;
+
+    private Path root;
+
+    public MediaCacheServiceImpl(StorageService storageService, MediaCacheProperties mediaCacheProperties) throws IOException {
+        this.storageService = storageService;
+        this.mediaCacheProperties = mediaCacheProperties;
+
+        // TinyLFU admission, weighed in bytes so the cap is a disk size
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(mediaCacheProperties.getMaxSize().toBytes())
+                .weigher((String objectName, CachedObject object) -> (int) Math.min(object.size(), Integer.MAX_VALUE))
+                .removalListener((String objectName, CachedObject object, RemovalCause cause) -> {
+                    if (object != null && cause != RemovalCause.REPLACED) {
+                        DELETE_EXECUTOR.execute(() -> delete(objectName, object));
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+
+        if (mediaCacheProperties.isEnabled()) {
+            this.root = Path.of(mediaCacheProperties.getDirectory()).toAbsolutePath().normalize();
+            recover();
+        }
+    }
+
+    @Override
+    public boolean isCacheable(long fileSize) {
+        return mediaCacheProperties.isEnabled() && fileSize <= mediaCacheProperties.getMaxObjectSize().toBytes();
+    }
+
+    @Override
+    public Path getFile(String objectName, long fileSize) throws Exception {
+
+        CompletableFuture<CachedObject> cached = cache.getIfPresent(objectName);
+        if (cached != null) {
+            return cached.join().path();
+        }
+
+        // the first caller downloads, concurrent callers for the same object wait on its future
+        CompletableFuture<CachedObject> loading = new CompletableFuture<>();
+        CompletableFuture<CachedObject> prior = cache.asMap().putIfAbsent(objectName, loading);
+        if (prior != null) {
+            return prior.join().path();
+        }
+
+        try {
+            CachedObject object = download(objectName);
+            loading.complete(object);
+            return object.path();
+        } catch (Exception e) {
+            // failed futures are dropped by the cache so the next request retries
+            loading.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void evict(String objectName) {
+        cache.synchronous().invalidate(objectName);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // same tag keys as the Spring managed caches, Prometheus rejects a metric name registered with other keys
+        CaffeineCacheMetrics.monitor(registry, cache, "media", Tags.of("cache.manager", "media", "name", "media"));
+        Gauge.builder("media.cache.hit.ratio", cache, c -> c.synchronous().stats().hitRate())
+                .description("Share of view and download requests served from the local disk cache")
+                .register(registry);
+    }
+
+    private CachedObject download(String objectName) throws Exception {
+
+        Path target = resolve(objectName);
+        Path temp = root.resolve(TEMP_DIR).resolve(UUID.randomUUID().toString());
+
+        Files.createDirectories(temp.getParent());
+        Files.createDirectories(target.getParent());
+
+        try (InputStream inputStream = storageService.getFile(objectName)) {
+            Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        return new CachedObject(target, Files.size(target));
+    }
+
+    private void delete(String objectName, CachedObject object) {
+
+        // the object may have been loaded again into the same path in the meantime
+        if (cache.asMap().containsKey(objectName)) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(object.path());
+        } catch (IOException e) {
+            log.warn("Could not delete cached file {}: {}", object.path(), e.getMessage());
+        }
+    }
+
+    // re-register files that survived a restart, drop half written downloads
+    private void recover() throws IOException {
+
+        Files.createDirectories(root);
+
+        Path tempDir = root.resolve(TEMP_DIR);
+        if (Files.exists(tempDir)) {
+            try (Stream<Path> paths = Files.walk(tempDir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(Files::isRegularFile).forEach(path -> {
+                try {
+                    String objectName = root.relativize(path).toString().replace('\\', '/');
+                    cache.put(objectName, CompletableFuture.completedFuture(new CachedObject(path, Files.size(path))));
+                } catch (IOException e) {
+                    log.warn("Skipping cached file {}: {}", path, e.getMessage());
+                }
+            });
+        }
+
+        log.info("Media cache at {} recovered {} objects", root, cache.asMap().size());
+    }
+
+    private Path resolve(String objectName) {
+
+        Path path = root.resolve(objectName).normalize();
+        if (!path.startsWith(root) || path.startsWith(root.resolve(TEMP_DIR))) {
+            throw new IllegalArgumentException("Invalid object name: " + objectName);
+        }
+        return path;
+    }
+
+    private record CachedObject(Path path, long size) {
+    }
+}
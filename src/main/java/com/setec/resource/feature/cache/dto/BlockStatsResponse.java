@@ -0,0 +1,12 @@
+package com.setec.resource.feature.cache.dto;
+
+import lombok.Builder;
+
+@Builder
+public record BlockStatsResponse(
+        String objectName,
+        long hits,
+        long misses,
+        double hitRate
+) {
+}
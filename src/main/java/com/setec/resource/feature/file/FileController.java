@@ -1,31 +1,53 @@
 package com.setec.resource.feature.file;
 
+import com.setec.resource.base.BaseSpecification;
 import com.setec.resource.domain.File;
+import com.setec.resource.feature.file.dto.BatchUploadItemResponse;
+import com.setec.resource.feature.file.dto.BulkDeleteItemResponse;
+import com.setec.resource.feature.file.dto.BulkDeleteRequest;
+import com.setec.resource.feature.file.dto.FilePageResponse;
 import com.setec.resource.feature.file.dto.FileResponse;
+import com.setec.resource.feature.file.dto.FileSearchResponse;
 import com.setec.resource.feature.file.dto.FileStreamResponse;
+import com.setec.resource.feature.file.dto.FileValidatorResponse;
 import com.setec.resource.feature.file.dto.FileViewResponse;
 import io.minio.errors.*;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.net.URI;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/files")
 @RequiredArgsConstructor
 public class FileController {
 
+    // file names are random and objects are never rewritten, so a response can be reused forever
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
     private final FileService fileService;
     private final FileRepository fileRepository;
 
@@ -38,11 +60,52 @@ public class FileController {
         return fileService.uploadSingleFile(file);
     }
 
+    // 201 when every file was stored, 207 when some of them failed
+//    @PreAuthorize("hasAnyAuthority('file:write')")
+    @PostMapping(value = "/batch", consumes = "multipart/form-data")
+    ResponseEntity<List<BatchUploadItemResponse>> uploadFiles(@RequestPart List<MultipartFile> files) {
+
+        List<BatchUploadItemResponse> responses = fileService.uploadBatch(files);
+
+        boolean allStored = responses.stream().allMatch(BatchUploadItemResponse::success);
+        return ResponseEntity.status(allStored ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS)
+                .body(responses);
+    }
+
+    // raw body upload, e.g. curl --data-binary @video.mp4 -H "Content-Type: video/mp4" ".../stream?fileName=video.mp4"
+    // the body is not spooled by the servlet container, it is pushed to MinIO part by part as it arrives
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping(value = "/stream")
+    FileResponse uploadStreamedFile(@RequestParam String fileName,
+                                    @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                    HttpServletRequest request) throws IOException {
+
+        return fileService.uploadStreamedFile(request.getInputStream(), contentType, fileName);
+    }
+
 
     @GetMapping()
 //    @PreAuthorize("hasAnyAuthority('file:read')")
-    List<FileResponse> loadAllFile() {
-        return fileService.loadAllFiles();
+    FilePageResponse loadAllFile(@RequestParam(required = false) String cursor,
+                                 @RequestParam(defaultValue = "50") int size) {
+        return fileService.loadFiles(cursor, size);
+    }
+
+    // filter on the metadata columns, ?page=0&size=50&sort=uploadedAt,desc (sort can be repeated)
+    @PostMapping("/search")
+//    @PreAuthorize("hasAnyAuthority('file:read')")
+    FileSearchResponse searchFiles(@RequestBody(required = false) BaseSpecification.FilterDto filterDto,
+                                   @PageableDefault(size = 50) Pageable pageable) {
+        return fileService.searchFiles(filterDto, pageable);
+    }
+
+    // Accept: application/x-ndjson exports every row, one JSON object per line
+    @GetMapping(produces = "application/x-ndjson")
+//    @PreAuthorize("hasAnyAuthority('file:read')")
+    ResponseEntity<StreamingResponseBody> streamAllFiles() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(fileService::streamAllFiles);
     }
 
 
@@ -60,43 +123,168 @@ public class FileController {
         fileService.deleteFileByName(fileName);
     }
 
+    //    @PreAuthorize("hasAnyAuthority('file:delete')")
+    @PostMapping("/bulk-delete")
+    List<BulkDeleteItemResponse> deleteFiles(@RequestBody BulkDeleteRequest bulkDeleteRequest) {
+        return fileService.deleteFiles(bulkDeleteRequest);
+    }
+
     // produces = Accept
     // consumes = Content-Type
     @GetMapping(path = "/download/{fileName}",
             produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    ResponseEntity<?> downloadFileByName(@PathVariable String fileName) {
+    ResponseEntity<InputStreamSource> downloadFileByName(
+            @PathVariable String fileName,
+            @RequestHeader(value = "Range", required = false) String rangeHeader,
+            @RequestHeader(value = "If-Range", required = false) String ifRange,
+            ServletWebRequest webRequest) {
 
-        System.out.println("Start download");
+        // answered from metadata alone, MinIO is not touched for a 304
+        FileValidatorResponse validators = fileService.loadValidators(fileName);
+        if (notModified(webRequest, validators)) {
+            return null;
+        }
 
-        Resource resource = fileService.downloadFileByName(fileName);
-        HttpHeaders headers = new HttpHeaders();
-        headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName);
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(resource);
+        // content types configured for redirects are fetched by the client straight from MinIO
+        String redirectUrl = fileService.getRedirectUrl(fileName, true);
+        if (redirectUrl != null) {
+            return redirect(redirectUrl);
+        }
+
+        // bytes are piped from MinIO to the response, nothing is written to local disk
+        FileStreamResponse stream = fileService.downloadFileByName(fileName, ifRangeMatches(ifRange, validators) ? rangeHeader : null);
+
+        return streamResponse(stream, validators, MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+                .body(stream.resource());
     }
 
     @GetMapping(value = "/view/{fileName}")
-    public ResponseEntity<Resource> viewByFileName(
+    public ResponseEntity<InputStreamSource> viewByFileName(
             @PathVariable String fileName,
-            @RequestHeader(value = "Range", required = false) String rangeHeader) {
+            @RequestParam(required = false) Integer w,
+            @RequestParam(required = false) Integer q,
+            @RequestHeader(value = "Range", required = false) String rangeHeader,
+            @RequestHeader(value = "If-Range", required = false) String ifRange,
+            ServletWebRequest webRequest) {
+
+        FileValidatorResponse validators = fileService.loadValidators(fileName);
+
+        // a variant is derived from immutable bytes, so it is tagged after the original
+        if (w != null) {
+            String eTag = validators.eTag();
+            validators = FileValidatorResponse.builder()
+                    .eTag(eTag.substring(0, eTag.length() - 1) + "-w" + w + (q != null ? "-q" + q : "") + "\"")
+                    .lastModified(validators.lastModified())
+                    .build();
+        }
+
+        if (notModified(webRequest, validators)) {
+            return null;
+        }
+
+        String range = ifRangeMatches(ifRange, validators) ? rangeHeader : null;
+
+        if (w != null) {
+            FileStreamResponse stream = fileService.getDerivedFileStream(fileName, w, q, range);
+
+            return streamResponse(stream, validators, MediaType.parseMediaType(stream.contentType()))
+                    .body(stream.resource());
+        }
+
+        String redirectUrl = fileService.getRedirectUrl(fileName, false);
+        if (redirectUrl != null) {
+            return redirect(redirectUrl);
+        }
+
+        FileStreamResponse stream = fileService.getFileStream(fileName, range);
+
+        return streamResponse(stream, validators, MediaType.parseMediaType(stream.contentType()))
+                .body(stream.resource());
+    }
+
+    private static boolean notModified(ServletWebRequest webRequest, FileValidatorResponse validators) {
+
+        // handles If-None-Match and If-Modified-Since (304) as well as If-Match and If-Unmodified-Since (412)
+        if (!webRequest.checkNotModified(validators.eTag(), validators.lastModified())) {
+            return false;
+        }
+
+        if (webRequest.getResponse() != null) {
+            webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE.getHeaderValue());
+        }
+        return true;
+    }
+
+    private static boolean ifRangeMatches(String ifRange, FileValidatorResponse validators) {
+
+        // RFC 9110 13.1.5: without a match the whole representation is sent instead of the range
+        if (ifRange == null) {
+            return true;
+        }
+
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(validators.eTag());
+        }
+
+        if (ifRange.startsWith("W/") || validators.lastModified() < 0) {
+            return false;
+        }
+
+        try {
+            long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date == validators.lastModified();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static ResponseEntity<InputStreamSource> redirect(String url) {
+
+        // the Range header is replayed by the client against the presigned url
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(URI.create(url))
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .build();
+    }
 
-        FileStreamResponse stream = fileService.getFileStream(fileName, rangeHeader);
+    private static ResponseEntity.BodyBuilder streamResponse(FileStreamResponse stream, FileValidatorResponse validators, MediaType contentType) {
 
         // Case 1: Standard 200 OK (Full File)
         if (!stream.isPartial()) {
             return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(stream.contentType()))
-                    .contentLength(stream.fileSize())
-                    .body(stream.resource());
+                    .headers(cacheHeaders(validators))
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .contentType(contentType)
+                    .contentLength(stream.fileSize());
+        }
+
+        // Case 2: 206 multipart/byteranges (several ranges, each part carries its own Content-Range)
+        // Content-Length is taken from the resource, it is computed up front
+        if (stream.boundary() != null) {
+            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                    .headers(cacheHeaders(validators))
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .contentType(new MediaType("multipart", "byteranges", Map.of("boundary", stream.boundary())));
         }
 
-        // Case 2: 206 Partial Content (Video Seeking)
+        // Case 3: 206 Partial Content (Video Seeking)
         return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                .contentType(MediaType.parseMediaType(stream.contentType()))
+                .headers(cacheHeaders(validators))
                 .header(HttpHeaders.CONTENT_RANGE, "bytes " + stream.start() + "-" + stream.end() + "/" + stream.fileSize())
                 .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                .contentLength((stream.end() - stream.start()) + 1)
-                .body(stream.resource());
+                .contentType(contentType)
+                .contentLength((stream.end() - stream.start()) + 1);
+    }
+
+    private static HttpHeaders cacheHeaders(FileValidatorResponse validators) {
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(validators.eTag());
+        if (validators.lastModified() >= 0) {
+            headers.setLastModified(validators.lastModified());
+        }
+        headers.setCacheControl(IMMUTABLE);
+        return headers;
     }
-}
\ No newline at end of file
+}
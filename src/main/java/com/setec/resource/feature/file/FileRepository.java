@@ -2,13 +2,106 @@ package com.setec.resource.feature.file;
 
 
 import com.setec.resource.domain.File;
+import com.setec.resource.domain.FileStatus;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface FileRepository extends JpaRepository<File, Long>{
+import static com.setec.resource.config.CacheConfig.FILES_CACHE;
 
+public interface FileRepository extends JpaRepository<File, Long>, JpaSpecificationExecutor<File> {
+
+    // empty results are cached as well, so unknown names do not hit the database again
+    @Cacheable(cacheNames = FILES_CACHE, key = "#p0")
     Optional<File> findByFileName(String fileName);
 
     boolean existsByFileName(String fileName);
-}
\ No newline at end of file
+
+    // served by idx_files_checksum, the size check guards against ever trusting a bare hash
+    // pending rows are skipped, their object may still disappear with the spool
+    @Query("select f from File f where f.checksum = :checksum and f.fileSize = :fileSize" +
+            " and (f.status is null or f.status = com.setec.resource.domain.FileStatus.STORED) order by f.id")
+    List<File> findStoredByChecksum(String checksum, Long fileSize, Limit limit);
+
+    // only the instance that spooled a row has its content
+    List<File> findByStatusAndSpoolNodeOrderByIdAsc(FileStatus status, String spoolNode, Limit limit);
+
+    List<File> findByIdInAndStatus(Collection<Long> ids, FileStatus status);
+
+    // rows spooled before the node was recorded are taken over by the instance that finds their content
+    @Modifying
+    @Transactional
+    @Query("update File f set f.spoolNode = :spoolNode where f.objectKey = :objectKey" +
+            " and f.status = com.setec.resource.domain.FileStatus.PENDING and (f.spoolNode is null or f.spoolNode = :spoolNode)")
+    int claimPending(String objectKey, String spoolNode);
+
+    // the name is part of the key so the cached row is evicted without loading it
+    @Modifying
+    @Transactional
+    @CacheEvict(cacheNames = FILES_CACHE, key = "#p1")
+    @Query("update File f set f.status = :status where f.id = :id and f.fileName = :fileName")
+    int updateStatus(Long id, String fileName, FileStatus status);
+
+    long countByObjectKey(String objectKey);
+
+    // every row of one object plus the named row (rows from before objectKey existed only match by name),
+    // locked until the transaction ends so references and deletes of the object are serialized
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from File f where f.objectKey = :objectKey or f.fileName = :fileName order by f.id")
+    List<File> lockByObjectKey(String objectKey, String fileName);
+
+    // the same for a chunk of a bulk delete, callers pass at most 1000 values per list
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select f from File f where f.objectKey in :objectKeys or f.fileName in :fileNames order by f.id")
+    List<File> lockByObjectKeyIn(Collection<String> objectKeys, Collection<String> fileNames);
+
+    @Query("select f.objectKey as objectKey, count(f) as total from File f where f.objectKey in :objectKeys group by f.objectKey")
+    List<ObjectReferences> countByObjectKeyIn(Collection<String> objectKeys);
+
+    // Oracle allows at most 1000 values in an IN list, callers pass chunks
+    List<File> findAllByFileNameIn(Collection<String> fileNames);
+
+    // keyset page: seeks on the primary key index instead of skipping rows with OFFSET
+    List<File> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // rows are pulled from the cursor in fetch size batches, must run inside a transaction
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "500"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("select f from File f order by f.id")
+    Stream<File> streamAll();
+
+    @Override
+    @CacheEvict(cacheNames = FILES_CACHE, key = "#p0.fileName")
+    <S extends File> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = FILES_CACHE, key = "#p0.fileName")
+    void delete(File entity);
+
+    // bulk statement without loading entities, so the cache cannot evict by key
+    @Override
+    @CacheEvict(cacheNames = FILES_CACHE, allEntries = true)
+    void deleteAllByIdInBatch(Iterable<Long> ids);
+
+    interface ObjectReferences {
+        String getObjectKey();
+
+        long getTotal();
+    }
+}
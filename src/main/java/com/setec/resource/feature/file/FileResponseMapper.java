@@ -0,0 +1,35 @@
+package com.setec.resource.feature.file;
+
+import com.setec.resource.domain.File;
+import com.setec.resource.domain.FileStatus;
+import com.setec.resource.feature.file.dto.FileResponse;
+
+/**
+ * Mapping of file rows to the response returned by the file endpoints.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public final class FileResponseMapper {
+
+    private FileResponseMapper() {
+    }
+
+    /**
+     * map a file row to its response
+     *
+     * @param file    is the stored file row
+     * @param viewUri is the view endpoint the file name is appended to, ending with a slash
+     * @return the response, with a status only while the upload is pending
+     */
+    public static FileResponse toFileResponse(File file, String viewUri) {
+        return FileResponse.builder()
+                .name(file.getFileName())
+                .contentType(file.getContentType())
+                .extension(file.getExtension())
+                .size(file.getFileSize())
+                .status(file.getStatus() == FileStatus.PENDING ? FileStatus.PENDING.name() : null)
+                .uri(viewUri + file.getFileName())
+                .build();
+    }
+}
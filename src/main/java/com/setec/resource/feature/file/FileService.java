@@ -1,14 +1,24 @@
 package com.setec.resource.feature.file;
 
 
+import com.setec.resource.base.BaseSpecification;
+import com.setec.resource.feature.file.dto.BatchUploadItemResponse;
+import com.setec.resource.feature.file.dto.BulkDeleteItemResponse;
+import com.setec.resource.feature.file.dto.BulkDeleteRequest;
+import com.setec.resource.feature.file.dto.FilePageResponse;
 import com.setec.resource.feature.file.dto.FileResponse;
+import com.setec.resource.feature.file.dto.FileSearchResponse;
 import com.setec.resource.feature.file.dto.FileStreamResponse;
+import com.setec.resource.feature.file.dto.FileValidatorResponse;
 import com.setec.resource.feature.file.dto.FileViewResponse;
 import io.minio.errors.*;
-import org.springframework.core.io.Resource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.data.domain.Pageable;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.List;
@@ -32,13 +42,83 @@ public interface FileService {
     FileResponse uploadSingleFile(MultipartFile file);
 
     /**
-     * get all file metadata and url
+     * Uploads a raw request body straight to storage without multipart spooling.
      *
-     * @return {@link List<FileResponse>}
+     * @param inputStream      is the request body
+     * @param contentType      is the content type of the body
+     * @param originalFilename is the client file name, used for the extension
+     * @return {@link FileResponse}
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    FileResponse uploadStreamedFile(InputStream inputStream, String contentType, String originalFilename);
+
+    /**
+     * Uploads many files at once, objects are written concurrently and metadata in one batch.
+     *
+     * @param files are the files to upload
+     * @return {@link List<BatchUploadItemResponse>} one result per file, in request order
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    List<BatchUploadItemResponse> uploadBatch(List<MultipartFile> files);
+
+    /**
+     * Generates a new time-ordered file name for an upload, uniqueness is left to the fileName constraint.
+     *
+     * @param extension is the file extension without the dot
+     * @return the file name including the extension
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    String generateFileName(String extension);
+
+    /**
+     * Saves the metadata of an object that has already been stored in MinIO.
+     *
+     * @param fileName    is the generated file name
+     * @param folderName  is the folder the object is stored under
+     * @param extension   is the file extension
+     * @param contentType is the content type of the object
+     * @param fileSize    is the object size in bytes
+     * @param checksum    is the hex SHA-256 of the content, or null when it is unknown
+     * @return {@link FileResponse}
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    FileResponse saveFile(String fileName, String folderName, String extension, String contentType, long fileSize, String checksum);
+
+    /**
+     * get one page of file metadata and url, ordered by upload
+     *
+     * @param cursor is the nextCursor of the previous page, null for the first page
+     * @param size   is the maximum number of files in the page
+     * @return {@link FilePageResponse}
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    FilePageResponse loadFiles(String cursor, int size);
+
+    /**
+     * search file metadata with a filter, one slice at a time
+     *
+     * @param filterDto is the filter on the file columns, null matches every file
+     * @param pageable  is the page number, size and sort on indexed columns, newest first when unsorted
+     * @return {@link FileSearchResponse}
      * @author Pov soknem
      * @since 1.0 (2024)
      */
-    List<FileResponse> loadAllFiles();
+    FileSearchResponse searchFiles(BaseSpecification.FilterDto filterDto, Pageable pageable);
+
+    /**
+     * write all file metadata as newline delimited JSON without loading the whole table
+     *
+     * @param outputStream is the response body
+     * @throws IOException when the client connection fails
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void streamAllFiles(OutputStream outputStream) throws IOException;
 
     /**
      * get file by filename
@@ -62,14 +142,47 @@ public interface FileService {
     void deleteFileByName(String fileName);
 
     /**
-     * download file by file name
+     * delete many files by name or by filter, objects and metadata rows are removed in batches
+     *
+     * @param bulkDeleteRequest are the file names or the filter selecting the files, a filter needs an explicit
+     *                          globalOperator and both may select at most 10000 files
+     * @return {@link List<BulkDeleteItemResponse>} one result per file
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    List<BulkDeleteItemResponse> deleteFiles(BulkDeleteRequest bulkDeleteRequest);
+
+    /**
+     * download file by file name, streamed from storage without a local copy
+     *
+     * @param fileName    is the file name to download
+     * @param rangeHeader the HTTP Range header from the request, may be null
+     * @return {@link FileStreamResponse}
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    FileStreamResponse downloadFileByName(String fileName, String rangeHeader);
+
+    /**
+     * get the presigned url a file is redirected to, when its content type is configured for redirects
+     *
+     * @param fileName is the name of the file
+     * @param download is true when the file is downloaded instead of viewed
+     * @return the presigned url, or null when the bytes are proxied through this service
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    String getRedirectUrl(String fileName, boolean download);
+
+    /**
+     * get the cache validators of a file from its metadata only, storage is not touched
      *
-     * @param fileName is the file name to download
-     * @return {@link  Resource}
+     * @param fileName is the name of the file
+     * @return {@link FileValidatorResponse}
      * @author Pov soknem
      * @since 1.0 (2024)
      */
-    Resource downloadFileByName(String fileName);
+    FileValidatorResponse loadValidators(String fileName);
 
     /**
      * view file by file name
@@ -92,7 +205,7 @@ public interface FileService {
             ErrorResponseException, IOException, NoSuchAlgorithmException, InvalidKeyException, InvalidResponseException, XmlParserException, InternalException, ServerException;
 
 
-    Resource viewFileRange(String fileName, String rangeHeader);
+    InputStreamSource viewFileRange(String fileName, String rangeHeader);
 
     /**
      * Handles both full and partial (Range) file streaming logic.
@@ -101,4 +214,17 @@ public interface FileService {
      * @return {@link FileStreamResponse}
      */
     FileStreamResponse getFileStream(String fileName, String rangeHeader);
+
+    /**
+     * get a resized variant of an image, rendered and stored on the first request
+     *
+     * @param fileName    is the name of the original image
+     * @param width       is one of the configured widths
+     * @param quality     is one of the configured qualities, null for the default
+     * @param rangeHeader is the Range header of the request, may be null
+     * @return {@link FileStreamResponse}
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    FileStreamResponse getDerivedFileStream(String fileName, int width, Integer quality, String rangeHeader);
 }
\ No newline at end of file
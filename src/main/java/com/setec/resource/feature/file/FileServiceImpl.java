@@ -1,46 +1,128 @@
 package com.setec.resource.feature.file;
 
 
+import com.setec.resource.base.BaseSpecification;
 import com.setec.resource.domain.File;
+import com.setec.resource.domain.FileStatus;
+import com.setec.resource.feature.cache.BlockCacheService;
+import com.setec.resource.feature.cache.MediaCacheService;
+import com.setec.resource.feature.file.dto.BatchUploadItemResponse;
+import com.setec.resource.feature.file.dto.BulkDeleteItemResponse;
+import com.setec.resource.feature.file.dto.BulkDeleteRequest;
+import com.setec.resource.feature.file.dto.FilePageResponse;
 import com.setec.resource.feature.file.dto.FileResponse;
+import com.setec.resource.feature.file.dto.FileSearchResponse;
 import com.setec.resource.feature.file.dto.FileStreamResponse;
+import com.setec.resource.feature.file.dto.FileValidatorResponse;
 import com.setec.resource.feature.file.dto.FileViewResponse;
-import com.setec.resource.feature.minio.MinioService;
+import com.setec.resource.feature.file.stream.ByteRange;
+import com.setec.resource.feature.file.stream.FileRegion;
+import com.setec.resource.feature.file.stream.HttpRanges;
+import com.setec.resource.feature.file.stream.MultipartByteRangesResource;
+import com.setec.resource.feature.image.ImageDerivativeService;
+import com.setec.resource.feature.image.ImageVariant;
+import com.setec.resource.feature.redirect.MediaRedirectService;
+import com.setec.resource.feature.spool.SpoolService;
+import com.setec.resource.feature.storage.StorageService;
 import com.setec.resource.util.MediaUtil;
-import io.minio.GetObjectArgs;
-import io.minio.MinioClient;
+import com.setec.resource.util.Mp4FastStart;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 //@RefreshScope
-public class FileServiceImpl implements FileService {
+public class FileServiceImpl implements FileService, MeterBinder {
 
-    private final MinioService minioService;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final int MAX_BATCH_SIZE = 100;
+
+    private static final int MAX_BULK_DELETE = 10_000;
+
+    private static final int IN_LIST_LIMIT = 1000;
+
+    private static final int MAX_NAME_ATTEMPTS = 3;
+
+    // indexed columns (or the primary key) only, sorting on anything else would scan
+    private static final Set<String> SORTABLE_COLUMNS = Set.of("id", "fileName", "contentType", "folder", "extension", "fileSize", "uploadedAt");
+
+    private final StorageService storageService;
+
+    private final MediaCacheService mediaCacheService;
+
+    private final BlockCacheService blockCacheService;
+
+    private final MediaRedirectService mediaRedirectService;
+
+    private final ImageDerivativeService imageDerivativeService;
+
+    private final SpoolService spoolService;
 
     private final FileRepository fileRepository;
 
-    private final MinioClient minioClient;
+    private final BaseSpecification<File> fileSpecification;
+
+    private final EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final JsonMapper jsonMapper;
+
+    private final AsyncTaskExecutor uploadExecutor;
+
+    private final MeterRegistry meterRegistry;
 
     @Value("${media.base-uri}")
     private String baseUri;
@@ -49,77 +131,564 @@ public class FileServiceImpl implements FileService {
     @Value("${media.image-end-point}")
     private String imageEndpoint;
 
-    @Value("${minio.bucket-name}")
-    String bucketName;
+    @Value("${media.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    @Value("${media.video.fast-start:true}")
+    private boolean fastStartEnabled;
+
+    private final AtomicLong dedupHits = new AtomicLong();
+
+    private final AtomicLong dedupBytesSaved = new AtomicLong();
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("media.dedup.uploads", dedupHits, AtomicLong::get)
+                .description("Uploads stored as a reference to an existing object")
+                .register(registry);
+        FunctionCounter.builder("media.dedup.saved", dedupBytesSaved, AtomicLong::get)
+                .description("Bytes not written to storage thanks to deduplication")
+                .baseUnit("bytes")
+                .register(registry);
+    }
 
     @Override
     public FileResponse uploadSingleFile(MultipartFile file) {
 
-        String folderName = getValidFolder(file);
+        for (int attempt = 1; ; attempt++) {
+
+            File fileObject = storeUpload(file, spoolService.isEnabled());
+
+            try {
+                //save file metadata to database
+                if (!saveFiles(List.of(fileObject)).isEmpty()) {
+                    // the duplicate's content was deleted meanwhile, the next attempt stores it again
+                    if (attempt == MAX_NAME_ATTEMPTS) {
+                        throw new ResponseStatusException(HttpStatus.CONFLICT, "Stored content changed during the upload, try again");
+                    }
+                    log.warn("Object {} was deleted while {} referenced it, storing the upload again",
+                            fileObject.getObjectName(), fileObject.getFileName());
+                    continue;
+                }
+            } catch (DataIntegrityViolationException e) {
+                // names are not looked up before the insert, only a real clash on the unique fileName is retried
+                if (attempt == MAX_NAME_ATTEMPTS || !fileRepository.existsByFileName(fileObject.getFileName())) {
+                    throw e;
+                }
+                if (fileObject.getStatus() == FileStatus.PENDING) {
+                    spoolService.discard(fileObject.getObjectName());
+                }
+                log.warn("File name {} is already taken, storing the upload under a new name", fileObject.getFileName());
+                continue;
+            }
+
+            // written to MinIO in the background, the client does not wait for it
+            if (fileObject.getStatus() == FileStatus.PENDING) {
+                spoolService.submit(fileObject);
+            }
+
+            return toFileResponse(fileObject);
+        }
+    }
+
+    // mp4/mov uploads with the moov box at the end are stored in fast-start layout
+    private File storeUpload(MultipartFile file, boolean spool) {
+
+        Path fastStartCopy = fastStartCopy(file);
+        try {
+            InputStreamSource content = fastStartCopy != null ? new FileSystemResource(fastStartCopy) : file;
+            return spool ? spoolMultipartFile(file, content) : storeMultipartFile(file, content);
+        } finally {
+            if (fastStartCopy != null) {
+                try {
+                    Files.deleteIfExists(fastStartCopy);
+                } catch (IOException e) {
+                    log.warn("Could not delete fast-start copy {}", fastStartCopy, e);
+                }
+            }
+        }
+    }
+
+    // returns a rewritten temp file, or null when the upload is kept as it is
+    private Path fastStartCopy(MultipartFile file) {
+
+        String contentType = file.getContentType();
+        if (!fastStartEnabled || contentType == null
+                || !(contentType.equals("video/mp4") || contentType.equals("video/quicktime"))) {
+            return null;
+        }
+
+        Path source = null;
+        Path target = null;
+        try {
+            // only the box headers are read here, a file that is already fast-start is not copied
+            try (InputStream inputStream = file.getInputStream()) {
+                if (!Mp4FastStart.needsFastStart(inputStream)) {
+                    return null;
+                }
+            }
+
+            source = Files.createTempFile("upload-", ".mp4");
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, source, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            target = Files.createTempFile("faststart-", ".mp4");
+            if (Mp4FastStart.rewrite(source, target)) {
+                Path rewritten = target;
+                target = null;
+                return rewritten;
+            }
+            return null;
+        } catch (IOException e) {
+            // the original layout still plays, it only needs the whole file first
+            log.warn("Fast-start rewrite failed for {}, storing it unchanged", file.getOriginalFilename(), e);
+            return null;
+        } finally {
+            for (Path path : new Path[]{source, target}) {
+                if (path != null) {
+                    try {
+                        Files.deleteIfExists(path);
+                    } catch (IOException e) {
+                        log.warn("Could not delete temp file {}", path, e);
+                    }
+                }
+            }
+        }
+    }
+
+    // writes the upload to the local spool and returns an unsaved PENDING row
+    private File spoolMultipartFile(MultipartFile file, InputStreamSource content) {
+
+        String folderName = MediaUtil.getValidFolder(file.getContentType());
 
         String extension = MediaUtil.extractExtension(Objects.requireNonNull(file.getOriginalFilename()));
 
-        String newName;
-        do {
-            newName = UUID.randomUUID().toString();
-        } while (fileRepository.existsByFileName(newName + "." + extension));
+        String fileName = generateFileName(extension);
+
+        String objectName = folderName + "/" + fileName;
 
+        MessageDigest digest = MediaUtil.sha256();
+        long fileSize;
+        try (InputStream inputStream = new DigestInputStream(content.getInputStream(), digest)) {
+            fileSize = spoolService.write(inputStream, objectName);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
 
-        String objectName = folderName + "/" + newName + "." + extension;
+        String checksum = MediaUtil.toHex(digest.digest());
 
+        if (dedupEnabled) {
+            File original = findDuplicate(checksum, fileSize);
+            if (original != null) {
+                spoolService.discard(objectName);
+                return newDuplicate(fileName, folderName, extension, file.getContentType(), original);
+            }
+        }
+
+        File fileObject = newFile(fileName, folderName, extension, file.getContentType(), fileSize, checksum);
+
+        fileObject.setStatus(FileStatus.PENDING);
+        fileObject.setSpoolNode(spoolService.getNode());
+
+        return fileObject;
+    }
+
+    // stores the object (unless its content is already stored) and returns the unsaved metadata row
+    private File storeMultipartFile(MultipartFile file, InputStreamSource content) {
+
+        String folderName = MediaUtil.getValidFolder(file.getContentType());
+
+        String extension = MediaUtil.extractExtension(Objects.requireNonNull(file.getOriginalFilename()));
+
+        String fileName = generateFileName(extension);
+
+        String objectName = folderName + "/" + fileName;
+
+        MessageDigest digest = MediaUtil.sha256();
+
+        String checksum = null;
+        if (dedupEnabled) {
+            // the multipart body is already local, hashing it first lets a duplicate skip the MinIO put
+            try (InputStream inputStream = new DigestInputStream(content.getInputStream(), digest)) {
+                inputStream.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+            }
+            checksum = MediaUtil.toHex(digest.digest());
+
+            File original = findDuplicate(checksum, file.getSize());
+            if (original != null) {
+                return newDuplicate(fileName, folderName, extension, file.getContentType(), original);
+            }
+        }
+
+        // otherwise the checksum is computed while the bytes go out, the upload is not read twice
+        try (InputStream inputStream = checksum != null ? content.getInputStream() : new DigestInputStream(content.getInputStream(), digest)) {
+            storageService.uploadFile(inputStream, file.getSize(), objectName, file.getContentType());
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+
+        return newFile(fileName, folderName, extension, file.getContentType(), file.getSize(),
+                checksum != null ? checksum : MediaUtil.toHex(digest.digest()));
+    }
+
+    // only a candidate, saveFiles checks under lock that its object is still referenced
+    private File findDuplicate(String checksum, long fileSize) {
+
+        return fileRepository.findStoredByChecksum(checksum, fileSize, Limit.of(1)).stream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    // inserts the rows in one transaction and returns the ones that were not inserted: rows referencing
+    // an object of another upload are only added while the rows of that object are locked, so a concurrent
+    // delete either counts the new reference or has already removed the last row and with it the object
+    private List<File> saveFiles(List<File> files) {
+
+        List<File> rejected = transactionTemplate.execute(status -> {
+
+            Map<String, List<File>> references = new LinkedHashMap<>();
+            for (File file : files) {
+                if (!ownsObject(file)) {
+                    references.computeIfAbsent(file.getObjectKey(), key -> new ArrayList<>()).add(file);
+                }
+            }
+
+            List<File> orphans = new ArrayList<>();
+            references.forEach((objectKey, rows) -> {
+                List<File> locked = fileRepository.lockByObjectKey(objectKey, objectKey.substring(objectKey.indexOf('/') + 1));
+                if (locked.isEmpty()) {
+                    orphans.addAll(rows);
+                    return;
+                }
+                // rows from before objectKey existed are counted as references once something points at them
+                for (File row : locked) {
+                    if (row.getObjectKey() == null) {
+                        row.setObjectKey(objectKey);
+                        fileRepository.save(row);
+                    }
+                }
+            });
+
+            List<File> accepted = new ArrayList<>(files);
+            accepted.removeAll(orphans);
+            fileRepository.saveAll(accepted);
+            return orphans;
+        });
+
+        for (File file : files) {
+            if (!ownsObject(file) && !rejected.contains(file)) {
+                dedupHits.incrementAndGet();
+                dedupBytesSaved.addAndGet(file.getFileSize());
+            }
+        }
+
+        return rejected;
+    }
+
+    private File newDuplicate(String fileName, String folderName, String extension, String contentType, File original) {
+
+        File fileObject = newFile(fileName, folderName, extension, contentType, original.getFileSize(), original.getChecksum());
+
+        fileObject.setObjectKey(original.getObjectName());
+
+        return fileObject;
+    }
+
+    @Override
+    public FileResponse uploadStreamedFile(InputStream inputStream, String contentType, String originalFilename) {
+
+        String folderName = MediaUtil.getValidFolder(contentType);
+
+        String extension = MediaUtil.extractExtension(Objects.requireNonNull(originalFilename));
+
+        String fileName = generateFileName(extension);
+
+        String objectName = folderName + "/" + fileName;
+
+        // the size is only known once the whole body has been pushed to MinIO
+        MessageDigest digest = MediaUtil.sha256();
+        long fileSize;
         try {
-            minioService.uploadFile(file, objectName);
+            fileSize = storageService.uploadStream(new DigestInputStream(inputStream, digest), objectName, contentType);
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
         }
 
+        String checksum = MediaUtil.toHex(digest.digest());
+
+        // a stream can only be hashed while it is uploaded, so a duplicate is dropped afterwards
+        if (dedupEnabled) {
+            File original = findDuplicate(checksum, fileSize);
+            if (original != null) {
+                File fileObject = newDuplicate(fileName, folderName, extension, contentType, original);
+                // our own copy is only dropped once the reference is in, otherwise it is kept as a regular upload
+                if (saveFiles(List.of(fileObject)).isEmpty()) {
+                    try {
+                        storageService.deleteFile(objectName);
+                    } catch (Exception e) {
+                        log.warn("Could not remove duplicate object {}: {}", objectName, e.getMessage());
+                    }
+                    return toFileResponse(fileObject);
+                }
+            }
+        }
+
+        return saveFile(fileName, folderName, extension, contentType, fileSize, checksum);
+    }
+
+    @Override
+    public String generateFileName(String extension) {
+
+        // no lookup, a clash of 74 random bits within the same millisecond is left to the unique constraint
+        return MediaUtil.uuidV7() + "." + extension;
+    }
+
+    @Override
+    public List<BatchUploadItemResponse> uploadBatch(List<MultipartFile> files) {
+
+        if (files.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch can contain at most " + MAX_BATCH_SIZE + " files");
+        }
+
+        // push all objects concurrently, the pool size bounds the parallelism towards MinIO
+        List<CompletableFuture<File>> uploads = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            uploads.add(CompletableFuture.supplyAsync(() -> storeUpload(file, false), uploadExecutor));
+        }
+
+        List<File> stored = new ArrayList<>();
+        for (CompletableFuture<File> upload : uploads) {
+            File file = upload.handle((result, error) -> result).join();
+            if (file != null) {
+                stored.add(file);
+            }
+        }
+
+        // one transaction, inserted as JDBC batches thanks to the pooled id sequence
+        String saveError = null;
+        List<File> rejected = List.of();
+        try {
+            rejected = saveFiles(stored);
+        } catch (Exception e) {
+            log.error("Batch metadata insert failed: {}", e.getMessage());
+            saveError = "Metadata could not be saved";
+            for (File file : stored) {
+                // deduplicated rows point at an object that belongs to an earlier upload
+                if (!ownsObject(file)) {
+                    continue;
+                }
+                try {
+                    storageService.deleteFile(file.getObjectName());
+                } catch (Exception deleteError) {
+                    log.warn("Could not remove orphaned object {}: {}", file.getFileName(), deleteError.getMessage());
+                }
+            }
+        }
+
+        List<BatchUploadItemResponse> responses = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            CompletableFuture<File> upload = uploads.get(i);
+            BatchUploadItemResponse.BatchUploadItemResponseBuilder item = BatchUploadItemResponse.builder()
+                    .originalName(files.get(i).getOriginalFilename());
+
+            if (upload.isCompletedExceptionally()) {
+                responses.add(item.success(false).error(errorMessage(upload)).build());
+            } else if (saveError != null) {
+                responses.add(item.success(false).error(saveError).build());
+            } else if (rejected.contains(upload.join())) {
+                // the duplicate's content was deleted meanwhile, nothing of this upload is stored
+                responses.add(item.success(false).error("Stored content changed during the upload, try again").build());
+            } else {
+                responses.add(item.success(true).file(toFileResponse(upload.join())).build());
+            }
+        }
+
+        return responses;
+    }
+
+    @Override
+    public FileResponse saveFile(String fileName, String folderName, String extension, String contentType, long fileSize, String checksum) {
+
+        File fileObject = newFile(fileName, folderName, extension, contentType, fileSize, checksum);
+
+        //save file metadata to database
+        fileRepository.save(fileObject);
+
+        //response to DTO
+        return toFileResponse(fileObject);
+    }
+
+    private File newFile(String fileName, String folderName, String extension, String contentType, long fileSize, String checksum) {
+
+        // tagged by folder (image, video, application), the client supplied content type is not bounded
+        DistributionSummary.builder("media.upload.size")
+                .description("Size of accepted uploads")
+                .baseUnit("bytes")
+                .tag("type", folderName)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(fileSize);
+
         //create new object that store file metadata
         File fileObject = new File();
 
         //set all field
-        fileObject.setFileName(newName + "." + extension);
+        fileObject.setFileName(fileName);
 
-        fileObject.setFileSize(file.getSize());
+        fileObject.setFileSize(fileSize);
 
-        fileObject.setContentType(file.getContentType());
+        fileObject.setContentType(contentType);
 
         fileObject.setFolder(folderName);
 
         fileObject.setExtension(extension);
 
-        //save file metadata to database
-        fileRepository.save(fileObject);
+        fileObject.setChecksum(checksum);
 
-        //response to DTO
-        return FileResponse.builder()
-                .name(newName + "." + extension)
-                .contentType(file.getContentType())
-                .extension(extension)
-                .size(file.getSize())
-                .uri(baseUri + imageEndpoint + "/view/" + newName + "." + extension)
-                .build();
+        fileObject.setObjectKey(folderName + "/" + fileName);
+
+        fileObject.setStatus(FileStatus.STORED);
+
+        // HTTP dates have second precision, store what Last-Modified will carry
+        fileObject.setUploadedAt(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+
+        return fileObject;
+    }
+
+    private static boolean ownsObject(File file) {
+        return file.getObjectName().equals(file.getFolder() + "/" + file.getFileName());
+    }
+
+    private static String errorMessage(CompletableFuture<?> future) {
+
+        Throwable error = future.handle((result, e) -> e).join();
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof ResponseStatusException e) {
+            return e.getReason();
+        }
+        return error.getMessage();
     }
 
     @Override
-    public List<FileResponse> loadAllFiles() {
+    public FilePageResponse loadFiles(String cursor, int size) {
 
-        // Fetch all images from the repository
-        List<File> files = fileRepository.findAll();
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        long lastId = cursor == null || cursor.isBlank() ? 0L : decodeCursor(cursor);
+
+        // fetch one extra row to know whether another page exists
+        List<File> files = fileRepository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(size + 1));
+
+        boolean hasNext = files.size() > size;
+        if (hasNext) {
+            files = files.subList(0, size);
+        }
 
         // Map each File entity to an FileResponse DTO
-        List<FileResponse> responses = new ArrayList<>();
+        List<FileResponse> responses = new ArrayList<>(files.size());
         for (File file : files) {
-            FileResponse response = FileResponse.builder()
-                    .name(file.getFileName())
-                    .contentType(file.getContentType())
-                    .extension(file.getExtension())
-                    .size(file.getFileSize())
-                    .uri(baseUri + imageEndpoint + "/view/" + file.getFileName())
-                    .build();
-            responses.add(response);
+            responses.add(toFileResponse(file));
         }
 
-        return responses;
+        return FilePageResponse.builder()
+                .files(responses)
+                .nextCursor(hasNext ? encodeCursor(files.get(files.size() - 1).getId()) : null)
+                .build();
+    }
+
+    @Override
+    public FileSearchResponse searchFiles(BaseSpecification.FilterDto filterDto, Pageable pageable) {
+
+        if (pageable.getPageSize() > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        // a slice fetches size + 1 rows to know about the next page, no COUNT(*) is issued
+        PageRequest pageRequest = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), toSort(pageable.getSort()));
+        Slice<File> files = fileRepository.findBy(fileSpecification.filter(filterDto), query -> query.slice(pageRequest));
+
+        List<FileResponse> responses = new ArrayList<>(files.getNumberOfElements());
+        for (File file : files) {
+            responses.add(toFileResponse(file));
+        }
+
+        return FileSearchResponse.builder()
+                .files(responses)
+                .page(pageRequest.getPageNumber())
+                .size(pageRequest.getPageSize())
+                .hasNext(files.hasNext())
+                .build();
+    }
+
+    // id is always appended so pages do not overlap on equal values
+    private static Sort toSort(Sort sort) {
+
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if (!SORTABLE_COLUMNS.contains(order.getProperty())) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid sort column: " + order.getProperty());
+            }
+            orders.add(order);
+        }
+
+        if (orders.isEmpty()) {
+            return Sort.by(Sort.Direction.DESC, "id");
+        }
+        if (orders.stream().noneMatch(order -> order.getProperty().equals("id"))) {
+            orders.add(Sort.Order.asc("id"));
+        }
+        return Sort.by(orders);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllFiles(OutputStream outputStream) throws IOException {
+
+        try (Stream<File> files = fileRepository.streamAll()) {
+            Iterator<File> iterator = files.iterator();
+            while (iterator.hasNext()) {
+                File file = iterator.next();
+
+                outputStream.write(jsonMapper.writeValueAsBytes(toFileResponse(file)));
+                outputStream.write('\n');
+
+                // keep the persistence context from growing with the result set
+                entityManager.detach(file);
+            }
+        }
+        outputStream.flush();
+    }
+
+    private FileResponse toFileResponse(File file) {
+        return FileResponseMapper.toFileResponse(file, baseUri + imageEndpoint + "/view/");
+    }
+
+    // consecutive views of at most size elements, for IN lists the database accepts
+    private static <T> List<List<T>> partition(List<T> list, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(list.subList(from, Math.min(from + size, list.size())));
+        }
+        return chunks;
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(String.valueOf(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long decodeCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
     }
 
     @Override
@@ -145,44 +714,210 @@ public class FileServiceImpl implements FileService {
     @Override
     public void deleteFileByName(String fileName) {
 
-        try {
-            String contentType = getContentType(fileName);
+        File file = fileRepository.findByFileName(fileName).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("file = %s has not been found", fileName)));
 
-            String folderName = contentType.split("/")[0];
+        String objectName = file.getObjectName();
 
-            String objectName = folderName + "/" + fileName;
+        // deduplicated uploads share one object: the row goes first and the references are counted under
+        // the same lock, the object is only removed after the commit left no row pointing at it
+        Long remaining = transactionTemplate.execute(status -> {
+            File locked = fileRepository.lockByObjectKey(objectName, fileName).stream()
+                    .filter(row -> row.getId().equals(file.getId()))
+                    .findFirst()
+                    .orElse(null);
+            if (locked == null) {
+                return null;
+            }
+            fileRepository.delete(locked);
+            return fileRepository.countByObjectKey(objectName);
+        });
 
-            minioService.deleteFile(objectName);
+        if (remaining == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("file = %s has not been found", fileName));
+        }
 
-        } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        if (remaining == 0) {
+            try {
+                storageService.deleteFile(objectName);
+            } catch (Exception e) {
+                log.warn("Row of {} is deleted but its object is left behind: {}", objectName, e.getMessage());
+            }
+            evictObject(objectName);
+        }
+    }
+
+    private void evictObject(String objectName) {
+        evictCaches(objectName);
+        if (objectName.startsWith("image/")) {
+            imageDerivativeService.evict(objectName);
         }
     }
 
+    private void evictCaches(String objectName) {
+        spoolService.discard(objectName);
+        mediaCacheService.evict(objectName);
+        blockCacheService.evict(objectName);
+    }
 
     @Override
-    public Resource downloadFileByName(String mediaName) {
+    public List<BulkDeleteItemResponse> deleteFiles(BulkDeleteRequest bulkDeleteRequest) {
 
-        try {
-            String contentType = getContentType(mediaName);
+        boolean byName = bulkDeleteRequest.fileNames() != null && !bulkDeleteRequest.fileNames().isEmpty();
+        boolean byFilter = bulkDeleteRequest.filter() != null && bulkDeleteRequest.filter().getSpecsDto() != null
+                && !bulkDeleteRequest.filter().getSpecsDto().isEmpty();
+
+        // an empty filter matches every row, never treat it as "delete all"
+        if (byName == byFilter) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Provide either fileNames or a non-empty filter");
+        }
 
-            String folderName = contentType.split("/")[0];
+        // a missing operator joins the specs with OR, far wider than a caller listing several conditions expects
+        if (byFilter && bulkDeleteRequest.filter().getGlobalOperator() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A delete filter needs an explicit globalOperator, AND or OR");
+        }
+
+        List<BulkDeleteItemResponse> responses = new ArrayList<>();
+
+        // resolve all metadata up front, one query per IN list chunk
+        List<File> files = new ArrayList<>();
+        if (byName) {
+            if (bulkDeleteRequest.fileNames().size() > MAX_BULK_DELETE) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_BULK_DELETE + " files can be deleted at once");
+            }
+
+            List<String> fileNames = new ArrayList<>(new LinkedHashSet<>(bulkDeleteRequest.fileNames()));
+            for (List<String> chunk : partition(fileNames, IN_LIST_LIMIT)) {
+                files.addAll(fileRepository.findAllByFileNameIn(chunk));
+            }
 
-            String objectName = folderName + "/" + mediaName;
+            Set<String> found = new HashSet<>();
+            files.forEach(file -> found.add(file.getFileName()));
+            for (String fileName : fileNames) {
+                if (!found.contains(fileName)) {
+                    responses.add(BulkDeleteItemResponse.builder()
+                            .name(fileName)
+                            .success(false)
+                            .error("File has not been found")
+                            .build());
+                }
+            }
+        } else {
+            // one row more than allowed tells a filter that matches too many apart from one that fits exactly
+            files = fileRepository.findBy(fileSpecification.filter(bulkDeleteRequest.filter()),
+                    query -> query.sortBy(Sort.by("id")).limit(MAX_BULK_DELETE + 1).all());
+            if (files.size() > MAX_BULK_DELETE) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "The filter matches more than " + MAX_BULK_DELETE + " files, narrow it down");
+            }
+        }
 
-            InputStream inputStream = minioService.getFile(objectName);
+        // rows are deleted first, under a lock on every row of their objects, and the references left
+        // after the delete are counted in the same transaction
+        List<File> requested = files;
+        Set<Long> deletedIds = new HashSet<>();
+        Map<String, Long> references = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<Long> requestedIds = new HashSet<>();
+            requested.forEach(file -> requestedIds.add(file.getId()));
+
+            for (List<File> chunk : partition(requested, IN_LIST_LIMIT)) {
+                List<String> objectKeys = chunk.stream().map(File::getObjectName).distinct().toList();
+                List<String> fileNames = chunk.stream().map(File::getFileName).toList();
+                for (File row : fileRepository.lockByObjectKeyIn(objectKeys, fileNames)) {
+                    if (requestedIds.contains(row.getId())) {
+                        deletedIds.add(row.getId());
+                    }
+                }
+            }
 
-            Path tempFile = Files.createTempFile("minio", mediaName);
+            for (List<Long> chunk : partition(new ArrayList<>(deletedIds), IN_LIST_LIMIT)) {
+                fileRepository.deleteAllByIdInBatch(chunk);
+            }
 
-            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            List<String> objectKeys = requested.stream().map(File::getObjectName).distinct().toList();
+            for (List<String> chunk : partition(objectKeys, IN_LIST_LIMIT)) {
+                fileRepository.countByObjectKeyIn(chunk).forEach(count -> references.put(count.getObjectKey(), count.getTotal()));
+            }
+        });
 
-            return new UrlResource(tempFile.toUri());
+        // objects no row points at any more, removed once the delete is committed
+        Set<String> unreferenced = new LinkedHashSet<>();
+        for (File file : files) {
+            if (deletedIds.contains(file.getId())) {
+                if (references.getOrDefault(file.getObjectName(), 0L) == 0) {
+                    unreferenced.add(file.getObjectName());
+                }
+                responses.add(BulkDeleteItemResponse.builder()
+                        .name(file.getFileName())
+                        .success(true)
+                        .build());
+            } else {
+                // deleted by someone else since it was looked up
+                responses.add(BulkDeleteItemResponse.builder()
+                        .name(file.getFileName())
+                        .success(false)
+                        .error("File has not been found")
+                        .build());
+            }
+        }
 
-        } catch (MalformedURLException e) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Media has not been found!");
+        Map<String, String> errors;
+        try {
+            errors = unreferenced.isEmpty() ? Map.of() : storageService.deleteFiles(unreferenced);
         } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+            errors = new HashMap<>();
+            for (String objectName : unreferenced) {
+                errors.put(objectName, e.getMessage());
+            }
         }
+        errors.forEach((objectName, error) ->
+                log.warn("Row of {} is deleted but its object is left behind: {}", objectName, error));
+
+        unreferenced.forEach(this::evictCaches);
+        // variants are deleted by name in batches, listing every image's folder is one round trip per image
+        imageDerivativeService.evictAll(unreferenced.stream()
+                .filter(objectName -> objectName.startsWith("image/"))
+                .toList());
+
+        return responses;
+    }
+
+
+    @Override
+    public FileStreamResponse downloadFileByName(String mediaName, String rangeHeader) {
+
+        // same pass-through stream as view, the caller only changes the disposition
+        return getFileStream(mediaName, rangeHeader);
+    }
+
+    @Override
+    public String getRedirectUrl(String fileName, boolean download) {
+
+        File file = fileRepository.findByFileName(fileName).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("file = %s has not been found", fileName)));
+
+        // a pending object only exists in the local spool
+        if (file.getStatus() == FileStatus.PENDING || !mediaRedirectService.isRedirected(file.getContentType())) {
+            return null;
+        }
+
+        return mediaRedirectService.getRedirectUrl(file, download);
+    }
+
+    @Override
+    public FileValidatorResponse loadValidators(String fileName) {
+
+        File file = fileRepository.findByFileName(fileName).orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("file = %s has not been found", fileName)));
+
+        // objects are never rewritten, so the unique name is a valid strong tag when no checksum was recorded
+        String eTag = "\"" + (file.getChecksum() != null ? file.getChecksum() : file.getFileName()) + "\"";
+
+        return FileValidatorResponse.builder()
+                .eTag(eTag)
+                .lastModified(file.getUploadedAt() != null ? file.getUploadedAt().toEpochMilli() : -1)
+                .build();
     }
 
     @Override
@@ -192,20 +927,14 @@ public class FileServiceImpl implements FileService {
         File image = fileRepository.findByFileName(fileName).orElseThrow(() ->
                 new ResponseStatusException(HttpStatus.NOT_FOUND, "File has not been found!"));
 
-        // Construct the object path in MinIO
-        Path path = Path.of(image.getFileName());
-        String objectPath = image.getFolder() + "/" + path;
+        // Construct the object path in storage
+        String objectPath = image.getObjectName();
 
 
-        // Fetch the object from MinIO
-        GetObjectArgs getObjectArgs = GetObjectArgs.builder()
-                .bucket(bucketName)
-                .object(objectPath)
-                .build();
-
+        // Fetch the object from storage
         InputStream inputStream;
         try {
-            inputStream = minioClient.getObject(getObjectArgs);
+            inputStream = storageService.getFile(objectPath);
         } catch (Exception e) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error fetching file from storage", e);
         }
@@ -228,63 +957,33 @@ public class FileServiceImpl implements FileService {
         return fileObject.getContentType();
     }
 
-    private static String getValidFolder(MultipartFile file) {
-
-        String contentType = file.getContentType();
-
-        if (contentType == null || !((contentType.startsWith("video/") || contentType.startsWith("image/") || contentType.equals("application/pdf")))) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported file type.");
-        }
-
-        return contentType.split("/")[0];
-    }
-
     @Override
-    public Resource viewFileRange(String fileName, String rangeHeader) {
+    public InputStreamSource viewFileRange(String fileName, String rangeHeader) {
         File fileMetadata = fileRepository.findByFileName(fileName)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
 
-        long fileSize = fileMetadata.getFileSize();
-        String objectPath = fileMetadata.getFolder() + "/" + fileMetadata.getFileName();
-
-        // Default values for the whole file
-        long start = 0;
-        long end = fileSize - 1;
-
-        // Parse Range Header: "bytes=start-end"
-        if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-            String[] ranges = rangeHeader.substring(6).split("-");
-            try {
-                start = Long.parseLong(ranges[0]);
-                if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                    end = Long.parseLong(ranges[1]);
-                }
-            } catch (NumberFormatException e) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid range format");
-            }
-        }
+        checkSpooledHere(fileMetadata);
 
-        if (start > end || start >= fileSize) {
-            throw new ResponseStatusException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
-        }
+        long fileSize = fileMetadata.getFileSize();
+        String objectPath = fileMetadata.getObjectName();
 
-        long contentLength = (end - start) + 1;
+        // a single resource can only carry one range, multi-range requests go through getFileStream
+        List<ByteRange> ranges = HttpRanges.parse(rangeHeader, fileSize);
+        long start = ranges.isEmpty() ? 0 : ranges.get(0).start();
+        long contentLength = ranges.isEmpty() ? fileSize : ranges.get(0).length();
 
         try {
-            // Fetch only the requested range from MinIO
-//            InputStream inputStream = minioClient.getObject(
-//                    GetObjectArgs.builder()
-//                            .bucket(bucketName)
-//                            .object(objectPath)
-//                            .offset(start)
-//                            .length(contentLength)
-//                            .build()
-//            );
-//            return new InputStreamResource(inputStream);
-            InputStream inputStream = minioService.getFile(objectPath, start, contentLength);
+            Path local = storageService.getLocalPath(objectPath);
+            if (local == null) {
+                local = spoolService.getFile(objectPath);
+            }
+            if (local != null) {
+                return new FileRegion(local, start, contentLength);
+            }
+            InputStream inputStream = storageService.getFile(objectPath, start, contentLength);
             return new InputStreamResource(inputStream);
         } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "MinIO error", e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Storage error", e);
         }
     }
 
@@ -293,48 +992,107 @@ public class FileServiceImpl implements FileService {
         File fileMetadata = fileRepository.findByFileName(fileName)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found"));
 
-        long fileSize = fileMetadata.getFileSize();
-        String objectPath = fileMetadata.getFolder() + "/" + fileMetadata.getFileName();
+        checkSpooledHere(fileMetadata);
 
-        long start = 0;
-        long end = fileSize - 1;
-        boolean isPartial = false;
+        return getObjectStream(fileMetadata.getObjectName(), fileMetadata.getFileSize(), fileMetadata.getContentType(), rangeHeader);
+    }
 
-        // Parse Range Header
-        if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-            isPartial = true;
-            String[] ranges = rangeHeader.substring(6).split("-");
-            try {
-                start = Long.parseLong(ranges[0]);
-                if (ranges.length > 1 && !ranges[1].isEmpty()) {
-                    end = Math.min(Long.parseLong(ranges[1]), fileSize - 1);
-                }
-            } catch (NumberFormatException e) {
-                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid Range header");
-            }
+    @Override
+    public FileStreamResponse getDerivedFileStream(String fileName, int width, Integer quality, String rangeHeader) {
+        File original = fileRepository.findByFileName(fileName)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found"));
+
+        if (!imageDerivativeService.isSupported(original.getContentType())) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Only images can be resized");
         }
 
-        if (start > end || start >= fileSize) {
-            throw new ResponseStatusException(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        if (original.getStatus() == FileStatus.PENDING) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "File is still being stored, retry later");
         }
 
+        // the variant is an ordinary object from here on, served with the same range and cache handling
+        ImageVariant variant = imageDerivativeService.getVariant(original, width, quality);
+
+        return getObjectStream(variant.objectName(), variant.size(), variant.contentType(), rangeHeader);
+    }
+
+    // a pending file is only readable on the instance whose spool holds it, MinIO does not have it yet
+    private void checkSpooledHere(File file) {
+        if (file.getStatus() == FileStatus.PENDING && !Objects.equals(file.getSpoolNode(), spoolService.getNode())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "File is still being stored, retry later");
+        }
+    }
+
+    private FileStreamResponse getObjectStream(String objectPath, long fileSize, String contentType, String rangeHeader) {
+
+        List<ByteRange> ranges = HttpRanges.parse(rangeHeader, fileSize);
+
         try {
+            // local copies first: local storage itself, the spool for objects not in MinIO yet, then the media cache
+            Path local = storageService.getLocalPath(objectPath);
+            if (local == null) {
+                local = spoolService.getFile(objectPath);
+            }
+            if (local == null && mediaCacheService.isCacheable(fileSize)) {
+                local = mediaCacheService.getFile(objectPath, fileSize);
+            }
+
+            if (ranges.size() > 1) {
+                // every part is read on its own, from the local file or with a ranged MinIO get
+                Path path = local;
+                MultipartByteRangesResource resource = new MultipartByteRangesResource(ranges, fileSize, contentType,
+                        (start, length) -> path != null
+                                ? new FileRegion(path, start, length).getInputStream()
+                                : blockCacheService.isEnabled()
+                                ? blockCacheService.getRange(objectPath, fileSize, start, length)
+                                : openRange(objectPath, start, length));
+
+                return new FileStreamResponse(resource, contentType, fileSize, 0, 0, true, resource.getBoundary());
+            }
+
+            boolean isPartial = !ranges.isEmpty();
+            long start = isPartial ? ranges.get(0).start() : 0;
+            long end = isPartial ? ranges.get(0).end() : fileSize - 1;
             long contentLength = (end - start) + 1;
-            // Call your MinIO service range method
-            InputStream inputStream = minioService.getFile(objectPath, start, contentLength);
-            Resource resource = new InputStreamResource(inputStream);
+
+            InputStreamSource resource;
+            if (local != null) {
+                // served with a zero-copy transfer
+                resource = new FileRegion(local, start, contentLength);
+            } else if (isPartial && blockCacheService.isEnabled()) {
+                // seeks hit aligned blocks that earlier requests and read-ahead already fetched
+                resource = new InputStreamResource(blockCacheService.getRange(objectPath, fileSize, start, contentLength));
+            } else {
+                InputStream inputStream = isPartial
+                        ? storageService.getFile(objectPath, start, contentLength)
+                        : storageService.getFile(objectPath);
+                resource = new InputStreamResource(inputStream);
+            }
 
             return new FileStreamResponse(
                     resource,
-                    fileMetadata.getContentType(),
+                    contentType,
                     fileSize,
                     start,
                     end,
-                    isPartial
+                    isPartial,
+                    null
             );
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error streaming file: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Streaming failed");
         }
     }
+
+    private InputStream openRange(String objectPath, long start, long length) throws IOException {
+        try {
+            return storageService.getFile(objectPath, start, length);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.setec.resource.feature.file.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchUploadItemResponse(
+        String originalName,
+        boolean success,
+        FileResponse file,
+        String error
+) {
+}
@@ -0,0 +1,13 @@
+package com.setec.resource.feature.file.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkDeleteItemResponse(
+        String name,
+        boolean success,
+        String error
+) {
+}
@@ -0,0 +1,12 @@
+package com.setec.resource.feature.file.dto;
+
+import com.setec.resource.base.BaseSpecification;
+
+import java.util.List;
+
+// either explicit file names or a filter on the file metadata
+public record BulkDeleteRequest(
+        List<String> fileNames,
+        BaseSpecification.FilterDto filter
+) {
+}
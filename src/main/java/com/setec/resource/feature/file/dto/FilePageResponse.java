@@ -0,0 +1,15 @@
+package com.setec.resource.feature.file.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record FilePageResponse(
+        List<FileResponse> files,
+        // pass back as ?cursor= to get the next page, absent on the last page
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String nextCursor
+) {
+}
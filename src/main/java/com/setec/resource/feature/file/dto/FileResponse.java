@@ -11,7 +11,10 @@ public record FileResponse(
         String extension,
         String uri,
         @JsonInclude(JsonInclude.Include.NON_NULL)
-        Long size
+        Long size,
+        // PENDING while the upload is still being written to storage
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String status
 ) {
 
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.setec.resource.feature.file.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record FileSearchResponse(
+        List<FileResponse> files,
+        int page,
+        int size,
+        // a slice is read with one extra row instead of a COUNT(*), so only the next page is known
+        boolean hasNext
+) {
+}
@@ -1,12 +1,15 @@
 package com.setec.resource.feature.file.dto;
 
-import org.springframework.core.io.Resource;
+import org.springframework.core.io.InputStreamSource;
 
 public record FileStreamResponse(
-    Resource resource,
+    // local files are FileRegion bodies, never a Resource Spring MVC would re-range
+    InputStreamSource resource,
     String contentType,
     long fileSize,
     long start,
     long end,
-    boolean isPartial
+    boolean isPartial,
+    // set for multipart/byteranges bodies, start and end are unused then
+    String boundary
 ) {}
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.setec.resource.feature.file.dto;
+
+import lombok.Builder;
+
+@Builder
+public record FileValidatorResponse(
+        // quoted strong entity tag
+        String eTag,
+        // epoch millis, -1 for files stored before upload times were recorded
+        long lastModified
+) {
+}
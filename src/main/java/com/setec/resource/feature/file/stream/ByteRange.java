@@ -0,0 +1,9 @@
+package com.setec.resource.feature.file.stream;
+
+// inclusive byte positions, already resolved against the representation length
+public record ByteRange(long start, long end) {
+
+    public long length() {
+        return end - start + 1;
+    }
+}
@@ -0,0 +1,73 @@
+package com.setec.resource.feature.file.stream;
+
+import lombok.Getter;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A byte region of a local file, written to the response by
+ * {@link FileRegionHttpMessageConverter} with {@link FileChannel#transferTo} instead of a heap buffer copy.
+ * Deliberately not a {@link org.springframework.core.io.Resource}: Spring MVC applies its own Range
+ * handling to resource bodies sent with 200, which would undo the ranges {@link HttpRanges} chose to ignore.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+@Getter
+public class FileRegion implements InputStreamSource {
+
+    private final Path path;
+
+    private final long position;
+
+    private final long count;
+
+    public FileRegion(Path path, long position, long count) {
+        this.path = path;
+        this.position = position;
+        this.count = count;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ).position(position);
+
+        // only expose the region, callers that fall back to plain streams must not read past it
+        return new FilterInputStream(Channels.newInputStream(channel)) {
+
+            private long remaining = count;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = super.read(b, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+                return n;
+            }
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.setec.resource.feature.file.stream;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Range header parsing following RFC 9110 section 14 (formerly RFC 7233).
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public final class HttpRanges {
+
+    // more parts than this after coalescing is treated like no Range header at all
+    public static final int MAX_RANGES = 16;
+
+    private HttpRanges() {
+    }
+
+    /**
+     * resolve a Range header against a representation length
+     *
+     * @param rangeHeader is the raw header value, may be null
+     * @param length      is the full size in bytes
+     * @return sorted, non overlapping ranges, empty when the whole representation should be sent
+     * @throws RangeNotSatisfiableException when the header is valid but no range overlaps the content
+     */
+    public static List<ByteRange> parse(String rangeHeader, long length) {
+
+        if (rangeHeader == null) {
+            return List.of();
+        }
+
+        int equals = rangeHeader.indexOf('=');
+        if (equals < 0 || !rangeHeader.substring(0, equals).trim().equalsIgnoreCase("bytes")) {
+            // unknown range units are ignored
+            return List.of();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        boolean any = false;
+
+        for (String spec : rangeHeader.substring(equals + 1).split(",", -1)) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                // empty list elements are allowed by the list syntax
+                continue;
+            }
+
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return List.of();
+            }
+
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+
+            if (first.isEmpty()) {
+                // suffix range: the final N bytes
+                long suffix = parseNumber(last);
+                if (suffix < 0) {
+                    return List.of();
+                }
+                any = true;
+                if (suffix > 0 && length > 0) {
+                    ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                }
+                continue;
+            }
+
+            long start = parseNumber(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : parseNumber(last);
+            if (start < 0 || end < 0 || end < start) {
+                // a syntactically invalid range set invalidates the whole header
+                return List.of();
+            }
+
+            any = true;
+            if (start < length) {
+                ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+            }
+        }
+
+        if (!any) {
+            return List.of();
+        }
+
+        if (ranges.isEmpty()) {
+            throw new RangeNotSatisfiableException(length);
+        }
+
+        List<ByteRange> coalesced = coalesce(ranges);
+
+        return coalesced.size() > MAX_RANGES ? List.of() : coalesced;
+    }
+
+    // overlapping and adjacent ranges become one part, so no byte is sent twice
+    static List<ByteRange> coalesce(List<ByteRange> ranges) {
+
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::start));
+
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = sorted.get(0);
+        for (int i = 1; i < sorted.size(); i++) {
+            ByteRange next = sorted.get(i);
+            if (next.start() <= current.end() + 1) {
+                current = new ByteRange(current.start(), Math.max(current.end(), next.end()));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+
+        return merged;
+    }
+
+    // digits only, values too large for a long saturate, -1 for anything else
+    private static long parseNumber(String value) {
+
+        if (value.isEmpty()) {
+            return -1;
+        }
+
+        long result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            if (result > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return Long.MAX_VALUE;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
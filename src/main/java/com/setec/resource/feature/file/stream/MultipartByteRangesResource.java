@@ -0,0 +1,134 @@
+package com.setec.resource.feature.file.stream;
+
+import lombok.Getter;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A multipart/byteranges body. Each part is opened only when the response reaches it,
+ * so every range is fetched on its own and nothing outside the ranges is read.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public class MultipartByteRangesResource extends AbstractResource {
+
+    @FunctionalInterface
+    public interface RangeSource {
+        InputStream open(long start, long length) throws IOException;
+    }
+
+    private final List<ByteRange> ranges;
+
+    private final RangeSource source;
+
+    @Getter
+    private final String boundary;
+
+    // part headers and the closing delimiter, ranges are interleaved between them
+    private final List<byte[]> delimiters = new ArrayList<>();
+
+    private final long contentLength;
+
+    public MultipartByteRangesResource(List<ByteRange> ranges, long totalLength, String contentType, RangeSource source) {
+        this.ranges = List.copyOf(ranges);
+        this.source = source;
+        this.boundary = new String(MimeTypeUtils.generateMultipartBoundary(), StandardCharsets.US_ASCII);
+
+        long length = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            String header = (i == 0 ? "" : "\r\n") + "--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: bytes " + range.start() + "-" + range.end() + "/" + totalLength + "\r\n"
+                    + "\r\n";
+            byte[] bytes = header.getBytes(StandardCharsets.US_ASCII);
+            delimiters.add(bytes);
+            length += bytes.length + range.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        delimiters.add(closing);
+
+        this.contentLength = length + closing.length;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isReadable() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "multipart/byteranges with " + ranges.size() + " parts";
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new PartsInputStream();
+    }
+
+    private class PartsInputStream extends InputStream {
+
+        // even positions are delimiters, odd positions are ranges
+        private int part;
+
+        private InputStream current;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (current == null) {
+                    if (part >= delimiters.size() + ranges.size()) {
+                        return -1;
+                    }
+                    current = part % 2 == 0
+                            ? new ByteArrayInputStream(delimiters.get(part / 2))
+                            : source.open(ranges.get(part / 2).start(), ranges.get(part / 2).length());
+                }
+                int n = current.read(b, off, len);
+                if (n > 0) {
+                    return n;
+                }
+                current.close();
+                current = null;
+                part++;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            part = delimiters.size() + ranges.size();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.setec.resource.feature.file.stream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+// 416 carrying the Content-Range: bytes */length header clients use to learn the size
+public class RangeNotSatisfiableException extends ResponseStatusException {
+
+    private final HttpHeaders headers = new HttpHeaders();
+
+    public RangeNotSatisfiableException(long length) {
+        super(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE, "Range not satisfiable");
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return headers;
+    }
+}
@@ -0,0 +1,165 @@
+package com.setec.resource.feature.file.stream;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the bytes actually written by the view and download endpoints, the streams open
+ * at a time and the size of partial responses. Bodies handed to Tomcat's sendfile are
+ * counted from the region the converter registered.
+ * Tags are the endpoint and the status class only, file names never become labels.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+@Component
+public class StreamMetricsFilter extends OncePerRequestFilter {
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final String FILES_PATH = "/api/v1/files/";
+
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    public StreamMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("media.streams.active", activeStreams, AtomicInteger::get)
+                .description("View and download responses being written")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return endpoint(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        CountingResponse countingResponse = new CountingResponse(response);
+        activeStreams.incrementAndGet();
+        try {
+            filterChain.doFilter(request, countingResponse);
+        } finally {
+            activeStreams.decrementAndGet();
+
+            long bytes = countingResponse.getCount();
+            if (request.getAttribute(SENDFILE_START) instanceof Long start && request.getAttribute(SENDFILE_END) instanceof Long end) {
+                bytes += end - start;
+            }
+
+            String endpoint = endpoint(request);
+            int status = response.getStatus();
+            DistributionSummary.builder("media.stream.bytes")
+                    .description("Bytes written per view or download response")
+                    .baseUnit("bytes")
+                    .tag("endpoint", endpoint)
+                    .tag("status", (status / 100) + "xx")
+                    .register(meterRegistry)
+                    .record(bytes);
+
+            if (status == HttpStatus.PARTIAL_CONTENT.value()) {
+                DistributionSummary.builder("media.range.bytes")
+                        .description("Size of partial (206) responses")
+                        .baseUnit("bytes")
+                        .tag("endpoint", endpoint)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(bytes);
+            }
+        }
+    }
+
+    private static String endpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith(FILES_PATH + "view/")) {
+            return "view";
+        }
+        if (path.startsWith(FILES_PATH + "download/")) {
+            return "download";
+        }
+        return null;
+    }
+
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+
+        private CountingOutputStream outputStream;
+
+        private CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CountingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        private long getCount() {
+            return outputStream != null ? outputStream.count : 0;
+        }
+    }
+
+    private static final class CountingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private long count;
+
+        private CountingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.setec.resource.feature.image;
+
+import com.setec.resource.domain.File;
+
+import java.util.Collection;
+
+/**
+ * Resized image variants rendered on first request and stored next to the originals
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public interface ImageDerivativeService {
+
+    /**
+     * check whether variants can be rendered for a content type
+     *
+     * @param contentType is the stored content type of the original
+     * @return true when the image can be decoded
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    boolean isSupported(String contentType);
+
+    /**
+     * get a variant of an image, rendering and storing it on the first request
+     *
+     * @param original is the metadata of the original image
+     * @param width    is one of the configured widths
+     * @param quality  is one of the configured qualities, null for the default
+     * @return {@link ImageVariant} stored in MinIO
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    ImageVariant getVariant(File original, int width, Integer quality);
+
+    /**
+     * remove all stored variants of an object
+     *
+     * @param objectName is the folder name and filename of the original
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void evict(String objectName);
+
+    /**
+     * remove the variants of many objects without listing each folder, only the names the configured
+     * widths and qualities produce are deleted
+     *
+     * @param objectNames are the folder names and filenames of the originals
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void evictAll(Collection<String> objectNames);
+}
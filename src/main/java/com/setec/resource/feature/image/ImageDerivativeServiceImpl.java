@@ -0,0 +1,272 @@
+package com.setec.resource.feature.image;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.setec.resource.domain.File;
+import com.setec.resource.feature.storage.StorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+@Service
+@Slf4j
+public class ImageDerivativeServiceImpl implements ImageDerivativeService {
+
+    private static final String DERIVED_FOLDER = "derived/";
+
+    private static final List<String> FORMATS = List.of("jpg", "png");
+
+    private final StorageService storageService;
+
+    private final MediaImageProperties mediaImageProperties;
+
+    private final ThreadPoolTaskExecutor imageExecutor;
+
+    // derived object name -> stored variant, concurrent first requests share one render
+    private final AsyncCache<String, ImageVariant> variants;
+
+    public ImageDerivativeServiceImpl(StorageService storageService,
+                                      MediaImageProperties mediaImageProperties,
+                                      @Qualifier("imageExecutor") ThreadPoolTaskExecutor imageExecutor) {
+        this.storageService = storageService;
+        this.mediaImageProperties = mediaImageProperties;
+        this.imageExecutor = imageExecutor;
+        this.variants = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .buildAsync();
+    }
+
+    @Override
+    public boolean isSupported(String contentType) {
+        return contentType != null && ImageIO.getImageReadersByMIMEType(contentType).hasNext();
+    }
+
+    @Override
+    public ImageVariant getVariant(File original, int width, Integer quality) {
+
+        int q = quality != null ? quality : mediaImageProperties.getDefaultQuality();
+        if (!mediaImageProperties.getWidths().contains(width) || !mediaImageProperties.getQualities().contains(q)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported size preset, widths: "
+                    + mediaImageProperties.getWidths() + ", qualities: " + mediaImageProperties.getQualities());
+        }
+
+        // png keeps transparency, everything else is re-encoded as jpeg
+        String format = "image/png".equals(original.getContentType()) || "image/gif".equals(original.getContentType())
+                ? "png" : "jpg";
+
+        String objectName = variantName(original.getObjectName(), width, q, format);
+
+        try {
+            return variants.get(objectName, (key, executor) ->
+                    CompletableFuture.supplyAsync(() -> load(original, key, width, q, format), imageExecutor)
+            ).join();
+        } catch (RejectedExecutionException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Image workers are busy, retry later");
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ResponseStatusException cause) {
+                throw cause;
+            }
+            log.error("Rendering {} failed: {}", objectName, e.getMessage());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Image could not be resized");
+        }
+    }
+
+    @Override
+    public void evict(String objectName) {
+
+        String prefix = DERIVED_FOLDER + objectName + "/";
+        variants.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+
+        try {
+            List<String> derived = storageService.listFiles(prefix);
+            if (!derived.isEmpty()) {
+                storageService.deleteFiles(derived);
+            }
+        } catch (Exception e) {
+            log.warn("Could not remove variants of {}: {}", objectName, e.getMessage());
+        }
+    }
+
+    @Override
+    public void evictAll(Collection<String> objectNames) {
+
+        if (objectNames.isEmpty()) {
+            return;
+        }
+
+        Set<String> originals = Set.copyOf(objectNames);
+        variants.asMap().keySet().removeIf(key -> originals.contains(originalOf(key)));
+
+        // every name the configured presets can produce, in both formats since deduplicated rows may disagree
+        // on the content type, deleting a name that was never rendered is not an error
+        List<String> derived = new ArrayList<>(originals.size() * mediaImageProperties.getWidths().size()
+                * mediaImageProperties.getQualities().size() * FORMATS.size());
+        for (String objectName : originals) {
+            for (int width : mediaImageProperties.getWidths()) {
+                for (int quality : mediaImageProperties.getQualities()) {
+                    for (String format : FORMATS) {
+                        derived.add(variantName(objectName, width, quality, format));
+                    }
+                }
+            }
+        }
+
+        try {
+            Map<String, String> errors = storageService.deleteFiles(derived);
+            if (!errors.isEmpty()) {
+                log.warn("Could not remove {} variants of {} images, first: {}", errors.size(), originals.size(),
+                        errors.entrySet().iterator().next());
+            }
+        } catch (Exception e) {
+            log.warn("Could not remove variants of {} images: {}", originals.size(), e.getMessage());
+        }
+    }
+
+    private static String variantName(String objectName, int width, int quality, String format) {
+        return DERIVED_FOLDER + objectName + "/w" + width + "_q" + quality + "." + format;
+    }
+
+    // derived/<object name>/w200_q80.jpg -> <object name>
+    private static String originalOf(String variantName) {
+        return variantName.substring(DERIVED_FOLDER.length(), variantName.lastIndexOf('/'));
+    }
+
+    private ImageVariant load(File original, String objectName, int width, int quality, String format) {
+
+        String contentType = "png".equals(format) ? "image/png" : "image/jpeg";
+
+        try {
+            // rendered earlier, possibly by another instance
+            long size = storageService.getObjectSize(objectName);
+            if (size >= 0) {
+                return new ImageVariant(objectName, contentType, size);
+            }
+
+            BufferedImage source;
+            try (InputStream inputStream = storageService.getFile(original.getObjectName())) {
+                source = read(inputStream);
+            }
+
+            byte[] bytes = encode(resize(source, width, "png".equals(format)), format, quality);
+
+            storageService.uploadFile(new ByteArrayInputStream(bytes), bytes.length, objectName, contentType);
+
+            return new ImageVariant(objectName, contentType, bytes.length);
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private BufferedImage read(InputStream inputStream) throws IOException {
+
+        try (ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+            if (!readers.hasNext()) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_CONTENT, "Image format is not supported");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInputStream, true, true);
+
+                // the header is enough to refuse decompression bombs before allocating pixels
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > mediaImageProperties.getMaxSourcePixels()) {
+                    throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_CONTENT, "Image is too large to resize");
+                }
+
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width, boolean alpha) {
+
+        // never upscale, small originals are only re-encoded
+        int targetWidth = Math.min(width, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        // halving steps with bilinear filtering keep quality close to bicubic at a fraction of the cost
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(targetWidth, currentWidth / 2);
+            currentHeight = Math.max(targetHeight, currentHeight / 2);
+
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                if (!alpha) {
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != targetWidth || currentHeight != targetHeight);
+
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, String format, int quality) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        if ("png".equals(format)) {
+            ImageIO.write(image, "png", outputStream);
+            return outputStream.toByteArray();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality / 100f);
+
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+
+        return outputStream.toByteArray();
+    }
+}
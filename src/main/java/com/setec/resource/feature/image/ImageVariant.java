@@ -0,0 +1,8 @@
+package com.setec.resource.feature.image;
+
+public record ImageVariant(
+        String objectName,
+        String contentType,
+        long size
+) {
+}
@@ -0,0 +1,26 @@
+package com.setec.resource.feature.image;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "media.image")
+public class MediaImageProperties {
+    // only these widths and qualities are rendered, so the number of variants per image stays finite
+    private List<Integer> widths = new ArrayList<>(List.of(96, 200, 400, 800, 1600));
+    private List<Integer> qualities = new ArrayList<>(List.of(60, 80, 90));
+    private int defaultQuality = 80;
+    // renders running at once, each holds a decoded image in memory
+    private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    // renders waiting for a worker, further requests get 503
+    private int queueCapacity = 100;
+    // sources above this are refused before decoding
+    private long maxSourcePixels = 50_000_000;
+}
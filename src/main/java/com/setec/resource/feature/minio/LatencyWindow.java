@@ -0,0 +1,60 @@
+package com.setec.resource.feature.minio;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The most recent latencies of one endpoint in a ring, percentiles are recomputed
+ * every {@link #REFRESH_EVERY} samples instead of on every read.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+class LatencyWindow {
+
+    private static final int SIZE = 1024;
+
+    private static final int REFRESH_EVERY = 64;
+
+    // percentiles are only trusted once this many samples were seen
+    private static final int MIN_SAMPLES = 32;
+
+    private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private volatile long[] sorted = new long[0];
+
+    void record(long nanos) {
+        long n = count.getAndIncrement();
+        samples.set((int) (n % SIZE), nanos);
+        if ((n + 1) % REFRESH_EVERY == 0) {
+            refresh();
+        }
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    // -1 until enough samples were recorded
+    long percentile(double percentile) {
+        long[] snapshot = sorted;
+        if (snapshot.length < MIN_SAMPLES) {
+            return -1;
+        }
+        int index = (int) Math.ceil(percentile * snapshot.length) - 1;
+        return snapshot[Math.clamp(index, 0, snapshot.length - 1)];
+    }
+
+    private void refresh() {
+        int size = (int) Math.min(count.get(), SIZE);
+        long[] copy = new long[size];
+        for (int i = 0; i < size; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        sorted = copy;
+    }
+}
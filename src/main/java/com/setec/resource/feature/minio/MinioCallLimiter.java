@@ -0,0 +1,70 @@
+package com.setec.resource.feature.minio;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// caps blocking MinIO calls in flight, with virtual threads the request count is no longer bounded by a thread pool
+@Component
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "minio", matchIfMissing = true)
+public class MinioCallLimiter implements MeterBinder {
+
+    private final MinioProperties minioProperties;
+
+    private final Semaphore permits;
+
+    public MinioCallLimiter(MinioProperties minioProperties) {
+        this.minioProperties = minioProperties;
+        this.permits = new Semaphore(minioProperties.getMaxConcurrentCalls(), true);
+    }
+
+    public void acquire() throws InterruptedException {
+        if (!permits.tryAcquire(minioProperties.getAcquireTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent storage calls");
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    // a download keeps its permit until the response has been copied and the stream closed
+    public InputStream releaseOnClose(InputStream inputStream) {
+        AtomicBoolean released = new AtomicBoolean();
+        return new FilterInputStream(inputStream) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        permits.release();
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("minio.calls.active", permits, p -> minioProperties.getMaxConcurrentCalls() - p.availablePermits())
+                .description("MinIO calls holding a permit")
+                .tag("endpoint", minioProperties.endpointName())
+                .register(registry);
+        Gauge.builder("minio.calls.waiting", permits, Semaphore::getQueueLength)
+                .description("Callers waiting for a MinIO permit")
+                .tag("endpoint", minioProperties.endpointName())
+                .register(registry);
+    }
+}
@@ -4,6 +4,12 @@ import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Setter
 @Getter
@@ -14,4 +20,78 @@ public class MinioProperties {
     private String accessKey;
     private String secretKey;
     private String bucketName;
+    private Upload upload = new Upload();
+    // blocking calls in flight at once, should stay below what the HTTP client and MinIO handle well
+    private int maxConcurrentCalls = 64;
+    // how long a call waits for a free slot before failing
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+    private Replication replication = new Replication();
+    private Hedge hedge = new Hedge();
+
+    // host:port of url, tags the metrics of each endpoint
+    public String endpointName() {
+        URI uri = URI.create(url);
+        return uri.getAuthority() != null ? uri.getAuthority() : url;
+    }
+
+    // same bucket and limits against another endpoint, credentials default to the primary ones
+    public MinioProperties withEndpoint(Endpoint endpoint) {
+        MinioProperties properties = new MinioProperties();
+        properties.setUrl(endpoint.getUrl());
+        properties.setAccessKey(endpoint.getAccessKey() != null ? endpoint.getAccessKey() : accessKey);
+        properties.setSecretKey(endpoint.getSecretKey() != null ? endpoint.getSecretKey() : secretKey);
+        properties.setBucketName(bucketName);
+        properties.setUpload(upload);
+        properties.setMaxConcurrentCalls(maxConcurrentCalls);
+        properties.setAcquireTimeout(acquireTimeout);
+        return properties;
+    }
+
+    @Setter
+    @Getter
+    public static class Upload {
+        // S3 requires at least 5MB for every part but the last
+        private DataSize partSize = DataSize.ofMegabytes(16);
+        // parts in flight per upload, heap use is (concurrency + 1) * partSize
+        private int concurrency = 4;
+        // objects put at once by the batch upload endpoint
+        private int batchConcurrency = 8;
+    }
+
+    // used when media.storage.type is replicated, url stays the primary that reads go to first
+    @Setter
+    @Getter
+    public static class Replication {
+        // further endpoints holding a copy of the bucket
+        private List<Endpoint> endpoints = new ArrayList<>();
+        private ReplicationMode mode = ReplicationMode.QUORUM;
+        // endpoints that must have stored a write before it succeeds, in QUORUM mode, the primary is always one of them
+        private int writeQuorum = 2;
+    }
+
+    public enum ReplicationMode {
+        // the caller waits for the primary and write-quorum - 1 others, the remaining copies finish in the background
+        QUORUM,
+        // the caller waits for the primary only
+        ASYNC
+    }
+
+    @Setter
+    @Getter
+    public static class Endpoint {
+        private String url;
+        private String accessKey;
+        private String secretKey;
+    }
+
+    // a read that has not answered within the percentile of its endpoint's recent latency gets a backup request
+    @Setter
+    @Getter
+    public static class Hedge {
+        private boolean enabled = true;
+        private double percentile = 0.95;
+        // bounds of the delay, also the delay until enough samples are collected
+        private Duration minDelay = Duration.ofMillis(10);
+        private Duration maxDelay = Duration.ofMillis(500);
+    }
 }
\ No newline at end of file
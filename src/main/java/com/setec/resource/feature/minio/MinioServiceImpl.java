@@ -1,88 +1,453 @@
 package com.setec.resource.feature.minio;
 
+import com.setec.resource.feature.storage.PresignedUrlProvider;
+import com.setec.resource.feature.storage.StoragePart;
+import com.setec.resource.feature.storage.StorageService;
 import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.ListObjectsArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
 import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
 import io.minio.errors.MinioException;
-import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
+import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import io.minio.messages.Part;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @Service
-@RequiredArgsConstructor
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "minio", matchIfMissing = true)
 //@RefreshScope
-public class    MinioServiceImpl implements MinioService {
+public class    MinioServiceImpl implements StorageService, PresignedUrlProvider {
 
     private final MinioClient minioClient;
 
-    @Value("${minio.bucket-name}")
-    private String bucketName;
+    private final MultipartMinioClient multipartMinioClient;
+
+    private final MinioProperties minioProperties;
+
+    private final MinioCallLimiter minioCallLimiter;
+
+    private final MeterRegistry meterRegistry;
+
+    private final String bucketName;
+
+    private final String endpoint;
+
+    // also built once per endpoint by ReplicatedMinioServiceImpl, so everything comes from the properties
+    public MinioServiceImpl(MinioClient minioClient,
+                            MultipartMinioClient multipartMinioClient,
+                            MinioProperties minioProperties,
+                            MinioCallLimiter minioCallLimiter,
+                            MeterRegistry meterRegistry) {
+        this.minioClient = minioClient;
+        this.multipartMinioClient = multipartMinioClient;
+        this.minioProperties = minioProperties;
+        this.minioCallLimiter = minioCallLimiter;
+        this.meterRegistry = meterRegistry;
+        this.bucketName = minioProperties.getBucketName();
+        this.endpoint = minioProperties.endpointName();
+    }
 
     @Override
     public void uploadFile(MultipartFile file, String objectName) throws Exception {
 
         try (InputStream inputStream = file.getInputStream()) {
-            minioClient.putObject(
+            uploadFile(inputStream, file.getSize(), objectName, file.getContentType());
+        }
+    }
+
+    @Override
+    public void uploadFile(InputStream inputStream, long size, String objectName, String contentType) throws Exception {
+
+        minioCallLimiter.acquire();
+        try {
+            timed("putObject", () -> minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(bucketName)
                             .object(objectName)
 //                            .stream(inputStream, inputStream.available(), -1)
-                            .stream(inputStream, file.getSize(), -1)
-                            .contentType(file.getContentType())
+                            .stream(inputStream, size, -1)
+                            .contentType(contentType)
                             .build()
-            );
+            ));
         } catch (Exception e) {
             throw new Exception("File upload failed: " + e.getMessage(), e);
+        } finally {
+            minioCallLimiter.release();
+        }
+    }
+
+    @Override
+    public long uploadStream(InputStream inputStream, String objectName, String contentType) throws Exception {
+
+        // one permit covers the whole upload, its parts are bounded by upload.concurrency
+        minioCallLimiter.acquire();
+        try {
+            return uploadParts(inputStream, objectName, contentType);
+        } finally {
+            minioCallLimiter.release();
+        }
+    }
+
+    private long uploadParts(InputStream inputStream, String objectName, String contentType) throws Exception {
+
+        int partSize = (int) minioProperties.getUpload().getPartSize().toBytes();
+        int concurrency = minioProperties.getUpload().getConcurrency();
+
+        byte[] buffer = new byte[partSize];
+        int read = inputStream.readNBytes(buffer, 0, partSize);
+
+        // everything fits into one part, a single put is cheaper than a multipart session
+        if (read < partSize) {
+            try {
+                byte[] data = buffer;
+                int length = read;
+                timed("putObject", () -> minioClient.putObject(
+                        PutObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .stream(new ByteArrayInputStream(data, 0, length), length, -1)
+                                .contentType(contentType)
+                                .build()
+                ));
+                return read;
+            } catch (Exception e) {
+                throw new Exception("File upload failed: " + e.getMessage(), e);
+            }
+        }
+
+        String uploadId = timed("createMultipartUpload", () -> multipartMinioClient.createUpload(bucketName, objectName, contentType).get());
+
+        // buffers are handed back once their part is stored, so at most concurrency + 1 are ever allocated
+        BlockingQueue<byte[]> freeBuffers = new ArrayBlockingQueue<>(concurrency + 1);
+        int allocated = 1;
+
+        List<CompletableFuture<Part>> parts = new ArrayList<>();
+        long total = 0;
+
+        try {
+            while (read > 0) {
+                byte[] data = buffer;
+                total += read;
+                long started = System.nanoTime();
+                parts.add(multipartMinioClient
+                        .uploadPart(bucketName, objectName, uploadId, parts.size() + 1, data, read)
+                        .whenComplete((part, error) -> {
+                            record("uploadPart", started, error);
+                            freeBuffers.offer(data);
+                        }));
+
+                // stop reading the request as soon as any part has failed
+                for (CompletableFuture<Part> part : parts) {
+                    if (part.isCompletedExceptionally()) {
+                        part.join();
+                    }
+                }
+
+                if (allocated <= concurrency) {
+                    buffer = new byte[partSize];
+                    allocated++;
+                } else {
+                    buffer = freeBuffers.take();
+                }
+                read = inputStream.readNBytes(buffer, 0, partSize);
+            }
+
+            Part[] completed = parts.stream()
+                    .map(CompletableFuture::join)
+                    .toArray(Part[]::new);
+
+            timed("completeMultipartUpload", () -> multipartMinioClient.completeUpload(bucketName, objectName, uploadId, completed).get());
+            return total;
+        } catch (Exception e) {
+            try {
+                timed("abortMultipartUpload", () -> {
+                    multipartMinioClient.abortUpload(bucketName, objectName, uploadId);
+                    return null;
+                });
+            } catch (Exception abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw new Exception("File upload failed: " + e.getMessage(), e);
         }
     }
 
     @Override
     public InputStream getFile(String objectName) throws Exception {
 
+        minioCallLimiter.acquire();
         try {
-            return minioClient.getObject(
+            return minioCallLimiter.releaseOnClose(timed("getObject", () -> minioClient.getObject(
                     GetObjectArgs.builder()
                             .bucket(bucketName)
                             .object(objectName)
                             .build()
-            );
+            )));
         } catch (MinioException e) {
+            minioCallLimiter.release();
             throw new Exception("Error occurred: " + e.getMessage(), e);
+        } catch (Exception e) {
+            minioCallLimiter.release();
+            throw e;
         }
     }
 
     @Override
     public void deleteFile(String objectName) throws Exception {
 
+        minioCallLimiter.acquire();
+        try {
+            timed("removeObject", () -> {
+                minioClient.removeObject(
+                        RemoveObjectArgs.builder()
+                                .bucket(bucketName)
+                                .object(objectName)
+                                .build()
+                );
+                return null;
+            });
+        } catch (MinioException e) {
+            throw new Exception("Error occurred: " + e.getMessage(), e);
+        } finally {
+            minioCallLimiter.release();
+        }
+    }
+
+    @Override
+    public Map<String, String> deleteFiles(Collection<String> objectNames) throws Exception {
+
+        List<DeleteObject> objects = objectNames.stream()
+                .map(DeleteObject::new)
+                .toList();
+
+        Map<String, String> errors = new HashMap<>();
+        minioCallLimiter.acquire();
+        try {
+            // the result is lazy, the requests are only sent while iterating it
+            timed("removeObjects", () -> {
+                Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                        RemoveObjectsArgs.builder()
+                                .bucket(bucketName)
+                                .objects(objects)
+                                .build()
+                );
+                for (Result<DeleteError> result : results) {
+                    DeleteError error = result.get();
+                    errors.put(error.objectName(), error.code() + ": " + error.message());
+                }
+                return null;
+            });
+        } catch (MinioException e) {
+            throw new Exception("Error occurred: " + e.getMessage(), e);
+        } finally {
+            minioCallLimiter.release();
+        }
+
+        return errors;
+    }
+
+    @Override
+    public long getObjectSize(String objectName) throws Exception {
+
+        minioCallLimiter.acquire();
         try {
-            minioClient.removeObject(
-                    RemoveObjectArgs.builder()
+            return timed("statObject", () -> minioClient.statObject(
+                    StatObjectArgs.builder()
                             .bucket(bucketName)
                             .object(objectName)
                             .build()
-            );
+            )).size();
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return -1;
+            }
+            throw new Exception("Error occurred: " + e.getMessage(), e);
+        } catch (MinioException e) {
+            throw new Exception("Error occurred: " + e.getMessage(), e);
+        } finally {
+            minioCallLimiter.release();
+        }
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws Exception {
+
+        List<String> objectNames = new ArrayList<>();
+        minioCallLimiter.acquire();
+        try {
+            timed("listObjects", () -> {
+                Iterable<Result<Item>> results = minioClient.listObjects(
+                        ListObjectsArgs.builder()
+                                .bucket(bucketName)
+                                .prefix(prefix)
+                                .recursive(true)
+                                .build()
+                );
+                for (Result<Item> result : results) {
+                    objectNames.add(result.get().objectName());
+                }
+                return null;
+            });
         } catch (MinioException e) {
             throw new Exception("Error occurred: " + e.getMessage(), e);
+        } finally {
+            minioCallLimiter.release();
         }
+
+        return objectNames;
     }
 
     @Override
     public InputStream getFile(String objectName, long offset, long length) throws Exception {
+
+        minioCallLimiter.acquire();
         try {
-            return minioClient.getObject(
+            return minioCallLimiter.releaseOnClose(timed("getObjectRange", () -> minioClient.getObject(
                     GetObjectArgs.builder()
                             .bucket(bucketName)
                             .object(objectName)
                             .offset(offset)
                             .length(length)
                             .build()
-            );
+            )));
         } catch (MinioException e) {
+            minioCallLimiter.release();
             throw new Exception("Error occurred while fetching range: " + e.getMessage(), e);
+        } catch (Exception e) {
+            minioCallLimiter.release();
+            throw e;
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public Path getLocalPath(String objectName) {
+        // objects are remote, reads go through the caches or a ranged get
+        return null;
+    }
+
+    @Override
+    public String createMultipartUpload(String objectName, String contentType) throws Exception {
+        return timed("createMultipartUpload", () -> multipartMinioClient.createUpload(bucketName, objectName, contentType).get());
+    }
+
+    @Override
+    public void uploadPart(String objectName, String uploadId, int partNumber, byte[] data, int length) throws Exception {
+        minioCallLimiter.acquire();
+        try {
+            timed("uploadPart", () -> multipartMinioClient.uploadPart(bucketName, objectName, uploadId, partNumber, data, length).get());
+        } finally {
+            minioCallLimiter.release();
+        }
+    }
+
+    @Override
+    public List<StoragePart> listParts(String objectName, String uploadId) throws Exception {
+        return timed("listParts", () -> multipartMinioClient.listParts(bucketName, objectName, uploadId)).stream()
+                .map(part -> new StoragePart(part.partNumber(), part.etag(), part.partSize()))
+                .toList();
+    }
+
+    @Override
+    public void completeMultipartUpload(String objectName, String uploadId, List<StoragePart> parts) throws Exception {
+
+        Part[] completed = parts.stream()
+                .map(part -> new Part(part.partNumber(), part.etag()))
+                .toArray(Part[]::new);
+
+        timed("completeMultipartUpload", () -> multipartMinioClient.completeUpload(bucketName, objectName, uploadId, completed).get());
+    }
+
+    @Override
+    public void abortMultipartUpload(String objectName, String uploadId) throws Exception {
+        timed("abortMultipartUpload", () -> {
+            multipartMinioClient.abortUpload(bucketName, objectName, uploadId);
+            return null;
+        });
+    }
+
+    @Override
+    public String getPresignedUrl(String objectName, Duration expiry, Map<String, String> extraQueryParams) throws Exception {
+
+        // signing is local, no request is sent to MinIO
+        return minioClient.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(Method.GET)
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                        .extraQueryParams(extraQueryParams)
+                        .build()
+        );
+    }
+
+    // latency of each call by operation and outcome, object names are never tags
+    private <T> T timed(String operation, MinioCall<T> call) throws Exception {
+        long started = System.nanoTime();
+        try {
+            T result = call.call();
+            record(operation, started, null);
+            return result;
+        } catch (Exception e) {
+            record(operation, started, e);
+            throw e;
+        }
+    }
+
+    private void record(String operation, long started, Throwable error) {
+
+        Timer.builder("minio.requests")
+                .description("MinIO calls by operation")
+                .tag("endpoint", endpoint)
+                .tag("operation", operation)
+                .tag("outcome", error == null ? "success" : "error")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException || error instanceof ExecutionException
+                    ? error.getCause() != null ? error.getCause() : error
+                    : error;
+            Counter.builder("minio.errors")
+                    .description("Failed MinIO calls by operation and exception type")
+                    .tag("endpoint", endpoint)
+                    .tag("operation", operation)
+                    .tag("exception", cause.getClass().getSimpleName())
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    @FunctionalInterface
+    private interface MinioCall<T> {
+        T call() throws Exception;
+    }
+}
@@ -0,0 +1,75 @@
+package com.setec.resource.feature.minio;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.MinioAsyncClient;
+import io.minio.ObjectWriteResponse;
+import io.minio.messages.ListPartsResult;
+import io.minio.messages.Part;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Exposes the S3 multipart upload calls that {@link MinioAsyncClient} keeps protected,
+ * so parts can be pushed as they arrive instead of through {@code putObject}.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    private static final int MAX_PARTS_PER_PAGE = 1000;
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public CompletableFuture<String> createUpload(String bucketName, String objectName, String contentType) throws Exception {
+
+        Multimap<String, String> headers = HashMultimap.create();
+        if (contentType != null) {
+            headers.put("Content-Type", contentType);
+        }
+
+        return createMultipartUploadAsync(bucketName, null, objectName, headers, HashMultimap.create())
+                .thenApply(response -> response.result().uploadId());
+    }
+
+    public CompletableFuture<Part> uploadPart(String bucketName, String objectName, String uploadId,
+                                              int partNumber, byte[] data, int length) throws Exception {
+
+        return uploadPartAsync(bucketName, null, objectName, data, length, uploadId, partNumber,
+                HashMultimap.create(), HashMultimap.create())
+                .thenApply(response -> new Part(partNumber, response.etag()));
+    }
+
+    public CompletableFuture<ObjectWriteResponse> completeUpload(String bucketName, String objectName, String uploadId,
+                                                                 Part[] parts) throws Exception {
+
+        return completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts,
+                HashMultimap.create(), HashMultimap.create());
+    }
+
+    public void abortUpload(String bucketName, String objectName, String uploadId) throws Exception {
+
+        abortMultipartUploadAsync(bucketName, null, objectName, uploadId,
+                HashMultimap.create(), HashMultimap.create()).get();
+    }
+
+    public List<Part> listParts(String bucketName, String objectName, String uploadId) throws Exception {
+
+        List<Part> parts = new ArrayList<>();
+        Integer marker = null;
+        ListPartsResult result;
+        do {
+            result = listPartsAsync(bucketName, null, objectName, MAX_PARTS_PER_PAGE, marker, uploadId,
+                    HashMultimap.create(), HashMultimap.create()).get().result();
+            parts.addAll(result.partList());
+            marker = result.nextPartNumberMarker();
+        } while (result.isTruncated());
+
+        return parts;
+    }
+}
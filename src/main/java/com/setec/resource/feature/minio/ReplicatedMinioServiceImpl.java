@@ -0,0 +1,519 @@
+package com.setec.resource.feature.minio;
+
+import com.setec.resource.config.MinioConfig;
+import com.setec.resource.feature.storage.PresignedUrlProvider;
+import com.setec.resource.feature.storage.StoragePart;
+import com.setec.resource.feature.storage.StorageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// the same bucket on several MinIO endpoints: writes go to all of them, reads go to the primary with a hedged backup
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "replicated")
+public class ReplicatedMinioServiceImpl implements StorageService, PresignedUrlProvider, MeterBinder {
+
+    private final MinioProperties minioProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final AsyncTaskExecutor replicaExecutor;
+
+    // primary first
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final AtomicLong reads = new AtomicLong();
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    public ReplicatedMinioServiceImpl(MinioProperties minioProperties,
+                                      MeterRegistry meterRegistry,
+                                      @Qualifier("replicaExecutor") AsyncTaskExecutor replicaExecutor) {
+        this.minioProperties = minioProperties;
+        this.meterRegistry = meterRegistry;
+        this.replicaExecutor = replicaExecutor;
+
+        MinioProperties.Replication replication = minioProperties.getReplication();
+        if (replication.getEndpoints().isEmpty()) {
+            throw new IllegalStateException("media.storage.type replicated needs at least one minio.replication.endpoints entry");
+        }
+        if (replication.getMode() == MinioProperties.ReplicationMode.QUORUM
+                && (replication.getWriteQuorum() < 1 || replication.getWriteQuorum() > replication.getEndpoints().size() + 1)) {
+            throw new IllegalStateException("minio.replication.write-quorum must be between 1 and the number of endpoints");
+        }
+
+        List<MinioProperties> endpoints = new ArrayList<>();
+        endpoints.add(minioProperties);
+        replication.getEndpoints().forEach(endpoint -> endpoints.add(minioProperties.withEndpoint(endpoint)));
+
+        // every endpoint gets its own clients and permits, a slow one cannot starve the others
+        for (MinioProperties endpoint : endpoints) {
+            MinioCallLimiter minioCallLimiter = new MinioCallLimiter(endpoint);
+            minioCallLimiter.bindTo(meterRegistry);
+            MinioServiceImpl minioService = new MinioServiceImpl(MinioConfig.newMinioClient(endpoint),
+                    MinioConfig.newMultipartMinioClient(endpoint), endpoint, minioCallLimiter, meterRegistry);
+            replicas.add(new Replica(endpoint.endpointName(), minioService, new LatencyWindow()));
+        }
+
+        log.info("Replicated storage on {} in {} mode", replicas.stream().map(Replica::name).toList(), replication.getMode());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("minio.hedge.reads", reads, AtomicLong::get)
+                .description("Reads that could be hedged")
+                .register(registry);
+        FunctionCounter.builder("minio.hedge.sent", hedges, AtomicLong::get)
+                .description("Backup requests sent because the first endpoint was slower than its hedge delay")
+                .register(registry);
+        FunctionCounter.builder("minio.hedge.wins", hedgeWins, AtomicLong::get)
+                .description("Backup requests that answered first")
+                .register(registry);
+        for (Replica replica : replicas) {
+            Gauge.builder("minio.hedge.delay", replica, r -> hedgeDelay(r) / 1e9)
+                    .description("Current wait before a read on this endpoint gets a backup request")
+                    .tag("endpoint", replica.name())
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void uploadFile(MultipartFile file, String objectName) throws Exception {
+
+        try (InputStream inputStream = file.getInputStream()) {
+            uploadFile(inputStream, file.getSize(), objectName, file.getContentType());
+        }
+    }
+
+    @Override
+    public void uploadFile(InputStream inputStream, long size, String objectName, String contentType) throws Exception {
+
+        replicate(inputStream, size, objectName, contentType);
+    }
+
+    @Override
+    public long uploadStream(InputStream inputStream, String objectName, String contentType) throws Exception {
+
+        return replicate(inputStream, -1, objectName, contentType);
+    }
+
+    private long replicate(InputStream inputStream, long size, String objectName, String contentType) throws Exception {
+
+        // every endpoint reads its own copy, the request body can only be read once
+        Path content = spool(inputStream, size);
+        return awaitWrites(writeCopies(content, replicas, "upload " + objectName, objectName, contentType)).getFirst();
+    }
+
+    private static Path spool(InputStream inputStream, long size) throws IOException {
+
+        Path content = Files.createTempFile("replica-", null);
+        try {
+            long copied = Files.copy(inputStream, content, StandardCopyOption.REPLACE_EXISTING);
+            if (size >= 0 && copied != size) {
+                throw new IOException(String.format("File upload failed: expected %d bytes but received %d", size, copied));
+            }
+            return content;
+        } catch (IOException e) {
+            Files.deleteIfExists(content);
+            throw e;
+        }
+    }
+
+    private List<CompletableFuture<Long>> writeCopies(Path content, List<Replica> targets, String description,
+                                                      String objectName, String contentType) throws IOException {
+
+        long size = Files.size(content);
+
+        // the length is known from the spooled copy, a single put streams it without a part buffer
+        List<CompletableFuture<Long>> writes = targets.stream()
+                .map(replica -> submit(replica, description, minioService -> {
+                    try (InputStream copy = Files.newInputStream(content)) {
+                        minioService.uploadFile(copy, size, objectName, contentType);
+                        return size;
+                    }
+                }))
+                .toList();
+
+        // the copy lives until the last endpoint is done, also the ones finishing in the background
+        CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).whenComplete((result, error) -> {
+            try {
+                Files.deleteIfExists(content);
+            } catch (IOException e) {
+                log.warn("Could not delete temp file {}", content, e);
+            }
+        });
+
+        return writes;
+    }
+
+    @Override
+    public InputStream getFile(String objectName) throws Exception {
+        return hedged(minioService -> minioService.getFile(objectName));
+    }
+
+    @Override
+    public InputStream getFile(String objectName, long offset, long length) throws Exception {
+        return hedged(minioService -> minioService.getFile(objectName, offset, length));
+    }
+
+    @Override
+    public Path getLocalPath(String objectName) {
+        return null;
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws Exception {
+        awaitWrites(submitAll("delete " + objectName, minioService -> {
+            minioService.deleteFile(objectName);
+            return null;
+        }));
+    }
+
+    @Override
+    public Map<String, String> deleteFiles(Collection<String> objectNames) throws Exception {
+
+        List<Map<String, String>> results = awaitWrites(submitAll("delete of " + objectNames.size() + " objects",
+                minioService -> minioService.deleteFiles(objectNames)));
+
+        Map<String, String> errors = new HashMap<>();
+        results.forEach(errors::putAll);
+        return errors;
+    }
+
+    @Override
+    public long getObjectSize(String objectName) throws Exception {
+        return failover(minioService -> minioService.getObjectSize(objectName));
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws Exception {
+        return failover(minioService -> minioService.listFiles(prefix));
+    }
+
+    // chunked uploads are assembled on the primary, the finished object is copied to the others
+    @Override
+    public String createMultipartUpload(String objectName, String contentType) throws Exception {
+        return primary().createMultipartUpload(objectName, contentType);
+    }
+
+    @Override
+    public void uploadPart(String objectName, String uploadId, int partNumber, byte[] data, int length) throws Exception {
+        primary().uploadPart(objectName, uploadId, partNumber, data, length);
+    }
+
+    @Override
+    public List<StoragePart> listParts(String objectName, String uploadId) throws Exception {
+        return primary().listParts(objectName, uploadId);
+    }
+
+    @Override
+    public void completeMultipartUpload(String objectName, String uploadId, List<StoragePart> parts) throws Exception {
+
+        primary().completeMultipartUpload(objectName, uploadId, parts);
+
+        // read back once and spooled like any other write, the content type is not known here,
+        // rows keep it and the primary serves presigned urls
+        Path content;
+        try (InputStream inputStream = primary().getFile(objectName)) {
+            content = spool(inputStream, -1);
+        }
+        List<CompletableFuture<Long>> copies = writeCopies(content, replicas.subList(1, replicas.size()),
+                "copy " + objectName, objectName, "application/octet-stream");
+
+        // the primary already counts towards the quorum
+        if (minioProperties.getReplication().getMode() == MinioProperties.ReplicationMode.QUORUM) {
+            await(copies, minioProperties.getReplication().getWriteQuorum() - 1);
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(String objectName, String uploadId) throws Exception {
+        primary().abortMultipartUpload(objectName, uploadId);
+    }
+
+    @Override
+    public String getPresignedUrl(String objectName, Duration expiry, Map<String, String> extraQueryParams) throws Exception {
+        // clients fetch from the primary, they are not hedged
+        return primary().getPresignedUrl(objectName, expiry, extraQueryParams);
+    }
+
+    private MinioServiceImpl primary() {
+        return replicas.getFirst().minioService();
+    }
+
+    // the primary answers unless it fails, then the next endpoint is asked
+    private <T> T failover(ReplicaCall<T> call) throws Exception {
+
+        Exception failure = null;
+        for (Replica replica : replicas) {
+            try {
+                return call.call(replica.minioService());
+            } catch (Exception e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        throw failure;
+    }
+
+    // a backup request goes out once the primary is slower than its usual latency, the first stream wins
+    private InputStream hedged(ReplicaCall<InputStream> call) throws Exception {
+
+        reads.incrementAndGet();
+
+        HedgedRead read = new HedgedRead(call);
+        read.launch();
+
+        try {
+            if (!minioProperties.getHedge().isEnabled()) {
+                return read.result.get();
+            }
+            try {
+                return read.result.get(hedgeDelay(replicas.getFirst()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (read.hedge()) {
+                    hedges.incrementAndGet();
+                }
+                return read.result.get();
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private long hedgeDelay(Replica replica) {
+        MinioProperties.Hedge hedge = minioProperties.getHedge();
+        long percentile = replica.latency().percentile(hedge.getPercentile());
+        // no history yet, wait the longest
+        if (percentile < 0) {
+            return hedge.getMaxDelay().toNanos();
+        }
+        return Math.clamp(percentile, hedge.getMinDelay().toNanos(), hedge.getMaxDelay().toNanos());
+    }
+
+    private <T> List<CompletableFuture<T>> submitAll(String description, ReplicaCall<T> call) {
+        return replicas.stream()
+                .map(replica -> submit(replica, description, call))
+                .toList();
+    }
+
+    private <T> CompletableFuture<T> submit(Replica replica, String description, ReplicaCall<T> call) {
+
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return call.call(replica.minioService());
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, replicaExecutor);
+
+        // also reported when the caller has already returned, that copy is now missing on this endpoint
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                log.warn("Replica {} failed the {}: {}", replica.name(), description, cause.getMessage());
+                Counter.builder("minio.replication.failures")
+                        .description("Writes that failed on one endpoint")
+                        .tag("endpoint", replica.name())
+                        .register(meterRegistry)
+                        .increment();
+            }
+        });
+
+        return future;
+    }
+
+    // ASYNC returns once the primary stored the write, QUORUM once the primary and write-quorum - 1 others did,
+    // the primary is always among them as presigned urls, chunked uploads and first reads go to it
+    private <T> List<T> awaitWrites(List<CompletableFuture<T>> writes) throws Exception {
+
+        List<T> results = new ArrayList<>(await(writes.subList(0, 1), 1));
+        if (minioProperties.getReplication().getMode() == MinioProperties.ReplicationMode.QUORUM) {
+            results.addAll(await(writes.subList(1, writes.size()), minioProperties.getReplication().getWriteQuorum() - 1));
+        }
+        return results;
+    }
+
+    private static <T> List<T> await(List<CompletableFuture<T>> futures, int quorum) throws Exception {
+
+        if (quorum <= 0) {
+            return List.of();
+        }
+
+        // deletes answer null, the results cannot double as the success count
+        List<T> results = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<Void> reached = new CompletableFuture<>();
+
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((result, error) -> {
+                if (error == null) {
+                    results.add(result);
+                    if (successes.incrementAndGet() >= quorum) {
+                        reached.complete(null);
+                    }
+                } else if (failures.incrementAndGet() > futures.size() - quorum) {
+                    // too many endpoints failed for the quorum to be reached
+                    reached.completeExceptionally(error);
+                }
+            });
+        }
+
+        try {
+            reached.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        synchronized (results) {
+            return new ArrayList<>(results);
+        }
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof Exception exception ? exception : e;
+    }
+
+    // one read over the endpoints: the primary first, the next on a hedge or as soon as one fails
+    private final class HedgedRead {
+
+        private final ReplicaCall<InputStream> call;
+
+        private final CompletableFuture<InputStream> result = new CompletableFuture<>();
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final Queue<Exception> errors = new ConcurrentLinkedQueue<>();
+
+        // set by whichever request answers the read first, the winning stream or the final failure
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private volatile int hedgeIndex = -1;
+
+        private HedgedRead(ReplicaCall<InputStream> call) {
+            this.call = call;
+        }
+
+        private boolean hedge() {
+            if (result.isDone()) {
+                return false;
+            }
+            return launch(true);
+        }
+
+        private boolean launch() {
+            return launch(false);
+        }
+
+        // false once every endpoint has been asked
+        private boolean launch(boolean hedge) {
+
+            // counted as running before the endpoint is claimed, a failing request that finds every endpoint
+            // claimed then always sees this one as well
+            running.incrementAndGet();
+            int index = next.getAndIncrement();
+            if (index >= replicas.size()) {
+                running.decrementAndGet();
+                return false;
+            }
+            if (hedge) {
+                hedgeIndex = index;
+            }
+
+            Replica replica = replicas.get(index);
+            long started = System.nanoTime();
+
+            replicaExecutor.execute(() -> {
+                InputStream inputStream;
+                try {
+                    inputStream = call.call(replica.minioService());
+                } catch (Exception e) {
+                    errors.add(e);
+                    running.decrementAndGet();
+                    // fail over right away instead of waiting for the hedge delay, the read only fails once
+                    // nothing is left to ask and no request started meanwhile, a hedge included
+                    if (!result.isDone() && !launch() && running.get() == 0 && settled.compareAndSet(false, true)) {
+                        Exception failure = errors.poll();
+                        errors.forEach(failure::addSuppressed);
+                        result.completeExceptionally(failure);
+                    }
+                    return;
+                }
+
+                replica.latency().record(System.nanoTime() - started);
+
+                // settled while still counted as running, a failing request can then never fail a read that
+                // has a stream, and the win is counted before the caller wakes up
+                boolean won = settled.compareAndSet(false, true);
+                running.decrementAndGet();
+                if (won) {
+                    if (index == hedgeIndex) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    result.complete(inputStream);
+                } else {
+                    // the other endpoint was faster, give the connection and the permit back
+                    try {
+                        inputStream.close();
+                    } catch (IOException e) {
+                        log.debug("Closing the slower replica stream failed: {}", e.getMessage());
+                    }
+                }
+            });
+
+            return true;
+        }
+    }
+
+    private record Replica(String name, MinioServiceImpl minioService, LatencyWindow latency) {
+    }
+
+    @FunctionalInterface
+    private interface ReplicaCall<T> {
+        T call(MinioServiceImpl minioService) throws Exception;
+    }
+}
@@ -0,0 +1,24 @@
+package com.setec.resource.feature.redirect;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "media.redirect")
+public class MediaRedirectProperties {
+    private boolean enabled;
+    // media types answered with a redirect, e.g. video/*, everything else is proxied
+    private List<String> contentTypes = new ArrayList<>();
+    // lifetime of a presigned url
+    private Duration expiry = Duration.ofMinutes(15);
+    // a cached url is dropped this long before it expires so clients never get one that is about to die
+    private Duration refreshBefore = Duration.ofMinutes(3);
+}
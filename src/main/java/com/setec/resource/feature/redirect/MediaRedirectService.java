@@ -0,0 +1,33 @@
+package com.setec.resource.feature.redirect;
+
+import com.setec.resource.domain.File;
+
+/**
+ * Presigned url redirects so media bytes go straight from MinIO to the client
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public interface MediaRedirectService {
+
+    /**
+     * check whether a file of this content type is served with a redirect
+     *
+     * @param contentType is the stored content type of the file
+     * @return true when redirects are enabled for the content type
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    boolean isRedirected(String contentType);
+
+    /**
+     * get a presigned url for a file, reusing a cached one while it is still fresh
+     *
+     * @param file     is the file metadata
+     * @param download is true when the browser should save the file instead of showing it
+     * @return the presigned url
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    String getRedirectUrl(File file, boolean download);
+}
@@ -0,0 +1,84 @@
+package com.setec.resource.feature.redirect;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.setec.resource.domain.File;
+import com.setec.resource.feature.storage.PresignedUrlProvider;
+import com.setec.resource.feature.storage.StorageService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class MediaRedirectServiceImpl implements MediaRedirectService {
+
+    // null when the storage backend cannot sign urls, redirects then have to stay off
+    private final PresignedUrlProvider presignedUrlProvider;
+
+    private final MediaRedirectProperties mediaRedirectProperties;
+
+    private final List<MediaType> contentTypes;
+
+    // objectName + disposition -> url, expires before the signature does
+    private final Cache<String, String> urls;
+
+    public MediaRedirectServiceImpl(StorageService storageService, MediaRedirectProperties mediaRedirectProperties) {
+        this.presignedUrlProvider = storageService instanceof PresignedUrlProvider provider ? provider : null;
+        this.mediaRedirectProperties = mediaRedirectProperties;
+        this.contentTypes = mediaRedirectProperties.getContentTypes().stream()
+                .map(MediaType::parseMediaType)
+                .toList();
+
+        if (mediaRedirectProperties.getRefreshBefore().compareTo(mediaRedirectProperties.getExpiry()) >= 0) {
+            throw new IllegalStateException("media.redirect.refresh-before must be shorter than media.redirect.expiry");
+        }
+
+        if (mediaRedirectProperties.isEnabled() && presignedUrlProvider == null) {
+            throw new IllegalStateException("media.redirect.enabled needs a storage backend with presigned urls");
+        }
+
+        this.urls = Caffeine.newBuilder()
+                .expireAfterWrite(mediaRedirectProperties.getExpiry().minus(mediaRedirectProperties.getRefreshBefore()))
+                .maximumSize(100_000)
+                .build();
+    }
+
+    @Override
+    public boolean isRedirected(String contentType) {
+
+        if (!mediaRedirectProperties.isEnabled() || contentType == null) {
+            return false;
+        }
+
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (Exception e) {
+            return false;
+        }
+
+        return contentTypes.stream().anyMatch(type -> type.includes(mediaType));
+    }
+
+    @Override
+    public String getRedirectUrl(File file, boolean download) {
+
+        String objectName = file.getObjectName();
+
+        // deduplicated files share an object, attachment urls still carry their own file name
+        return urls.get(download ? "attachment:" + file.getFileName() : "inline:" + objectName, key -> {
+            try {
+                Map<String, String> params = download
+                        ? Map.of("response-content-disposition", "attachment; filename=\"" + file.getFileName() + "\"")
+                        : Map.of();
+                return presignedUrlProvider.getPresignedUrl(objectName, mediaRedirectProperties.getExpiry(), params);
+            } catch (Exception e) {
+                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+            }
+        });
+    }
+}
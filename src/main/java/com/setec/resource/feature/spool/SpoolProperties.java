@@ -0,0 +1,28 @@
+package com.setec.resource.feature.spool;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "media.spool")
+public class SpoolProperties {
+    private boolean enabled;
+    private String directory;
+    // names this instance's spool in the shared database, defaults to the host name,
+    // must be unique per instance and stay the same across restarts
+    private String node;
+    // uploads to MinIO running at once
+    private int concurrency = 4;
+    // how often pending rows are picked up, also the first retry delay
+    private Duration pollInterval = Duration.ofSeconds(5);
+    // retries back off exponentially up to this delay
+    private Duration maxBackoff = Duration.ofMinutes(5);
+    // pending rows read per poll
+    private int batchSize = 100;
+}
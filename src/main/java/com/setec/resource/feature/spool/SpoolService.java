@@ -0,0 +1,74 @@
+package com.setec.resource.feature.spool;
+
+import com.setec.resource.domain.File;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Durable local spool, uploads are acknowledged once on disk and written to MinIO in the background
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public interface SpoolService {
+
+    /**
+     * check whether uploads go through the spool
+     *
+     * @return true when the spool is enabled
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    boolean isEnabled();
+
+    /**
+     * get the name this instance records on the rows it spools
+     *
+     * @return the spool node, null when the spool is disabled
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    String getNode();
+
+    /**
+     * write content to the spool, the file is synced to disk before this returns
+     *
+     * @param inputStream is the content to spool
+     * @param objectName  is the folder name and filename the content is stored under
+     * @return number of bytes written
+     * @throws IOException when the content cannot be written
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    long write(InputStream inputStream, String objectName) throws IOException;
+
+    /**
+     * get the spooled copy of an object that is not in MinIO yet
+     *
+     * @param objectName is the folder name and filename
+     * @return {@link Path} of the spooled file, or null when the object is not spooled
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    Path getFile(String objectName);
+
+    /**
+     * queue a pending file for upload without waiting for the next poll
+     *
+     * @param file is the pending file metadata
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void submit(File file);
+
+    /**
+     * drop the spooled copy of an object
+     *
+     * @param objectName is the folder name and filename
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void discard(String objectName);
+}
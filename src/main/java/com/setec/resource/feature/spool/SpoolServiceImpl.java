@@ -0,0 +1,258 @@
+package com.setec.resource.feature.spool;
+
+import com.setec.resource.domain.File;
+import com.setec.resource.domain.FileStatus;
+import com.setec.resource.feature.file.FileRepository;
+import com.setec.resource.feature.storage.StorageService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Service
+@Slf4j
+public class SpoolServiceImpl implements SpoolService {
+
+    private static final String TEMP_DIR = ".tmp";
+
+    // drained files stay a little longer so a read that was just handed the path can still open it
+    private static final Executor DELETE_EXECUTOR = CompletableFuture.delayedExecutor(30, TimeUnit.SECONDS);
+
+    private final StorageService storageService;
+
+    private final FileRepository fileRepository;
+
+    private final SpoolProperties spoolProperties;
+
+    private final AsyncTaskExecutor spoolExecutor;
+
+    // ids being uploaded right now, a poll never queues the same row twice
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Map<Long, Retry> retries = new ConcurrentHashMap<>();
+
+    private Path root;
+
+    private String node;
+
+    public SpoolServiceImpl(StorageService storageService,
+                            FileRepository fileRepository,
+                            SpoolProperties spoolProperties,
+                            @Qualifier("spoolExecutor") AsyncTaskExecutor spoolExecutor) throws IOException {
+        this.storageService = storageService;
+        this.fileRepository = fileRepository;
+        this.spoolProperties = spoolProperties;
+        this.spoolExecutor = spoolExecutor;
+
+        if (spoolProperties.isEnabled()) {
+            this.root = Path.of(spoolProperties.getDirectory()).toAbsolutePath().normalize();
+            this.node = StringUtils.hasText(spoolProperties.getNode())
+                    ? spoolProperties.getNode()
+                    : InetAddress.getLocalHost().getHostName();
+            recover();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return spoolProperties.isEnabled();
+    }
+
+    @Override
+    public String getNode() {
+        return node;
+    }
+
+    @Override
+    public long write(InputStream inputStream, String objectName) throws IOException {
+
+        Path target = resolve(objectName);
+        Path temp = root.resolve(TEMP_DIR).resolve(UUID.randomUUID().toString());
+
+        Files.createDirectories(target.getParent());
+
+        try {
+            long size = Files.copy(inputStream, temp);
+
+            // the client is told the upload succeeded, so the bytes must survive a crash
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+
+            // and so must the rename, which lives in the directory entry
+            try (FileChannel channel = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+                channel.force(true);
+            }
+            return size;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public Path getFile(String objectName) {
+
+        if (!spoolProperties.isEnabled()) {
+            return null;
+        }
+
+        Path path = resolve(objectName);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    @Override
+    public void submit(File file) {
+
+        // never block the caller on a busy executor, the next poll picks the row up instead
+        if (inFlight.size() >= spoolProperties.getConcurrency() || !inFlight.add(file.getId())) {
+            return;
+        }
+
+        try {
+            spoolExecutor.execute(() -> drain(file));
+        } catch (RejectedExecutionException e) {
+            // picked up again by the next poll
+            inFlight.remove(file.getId());
+        }
+    }
+
+    @Override
+    public void discard(String objectName) {
+
+        if (!spoolProperties.isEnabled()) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(resolve(objectName));
+        } catch (IOException e) {
+            log.warn("Could not delete spooled file {}: {}", objectName, e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${media.spool.poll-interval:5s}")
+    public void drainPending() {
+
+        if (!spoolProperties.isEnabled()) {
+            return;
+        }
+
+        // rows deleted while still pending never reach drain again, their backoff is dropped here
+        if (!retries.isEmpty()) {
+            Set<Long> pending = fileRepository.findByIdInAndStatus(Set.copyOf(retries.keySet()), FileStatus.PENDING).stream()
+                    .map(File::getId)
+                    .collect(Collectors.toSet());
+            retries.keySet().removeIf(id -> !pending.contains(id) && !inFlight.contains(id));
+        }
+
+        long now = System.currentTimeMillis();
+        for (File file : fileRepository.findByStatusAndSpoolNodeOrderByIdAsc(FileStatus.PENDING, node, Limit.of(spoolProperties.getBatchSize()))) {
+            Retry retry = retries.get(file.getId());
+            if (retry == null || retry.nextAttempt() <= now) {
+                submit(file);
+            }
+        }
+    }
+
+    private void drain(File file) {
+
+        String objectName = file.getObjectName();
+
+        try {
+            Path path = resolve(objectName);
+
+            if (Files.isRegularFile(path)) {
+                try (InputStream inputStream = Files.newInputStream(path)) {
+                    storageService.uploadFile(inputStream, Files.size(path), objectName, file.getContentType());
+                }
+            } else if (storageService.getObjectSize(objectName) < 0) {
+                // neither spooled nor uploaded, keeps backing off so it shows up in the logs
+                throw new IOException("Spooled content is missing");
+            }
+
+            if (fileRepository.updateStatus(file.getId(), file.getFileName(), FileStatus.STORED) == 0
+                    && fileRepository.countByObjectKey(objectName) == 0) {
+                // the row was deleted while its content was uploading
+                storageService.deleteFile(objectName);
+            }
+
+            retries.remove(file.getId());
+            DELETE_EXECUTOR.execute(() -> discard(objectName));
+        } catch (Exception e) {
+            Retry previous = retries.get(file.getId());
+            int attempts = previous == null ? 1 : previous.attempts() + 1;
+
+            long backoff = Math.min(spoolProperties.getMaxBackoff().toMillis(),
+                    spoolProperties.getPollInterval().toMillis() << Math.min(attempts - 1, 20));
+            retries.put(file.getId(), new Retry(attempts, System.currentTimeMillis() + backoff));
+
+            log.warn("Upload of spooled {} failed (attempt {}), retrying in {} ms: {}", objectName, attempts, backoff, e.getMessage());
+        } finally {
+            inFlight.remove(file.getId());
+        }
+    }
+
+    // drop half written files and spooled files whose row was never inserted, pending rows are drained by the poll
+    private void recover() throws IOException {
+
+        Files.createDirectories(root.resolve(TEMP_DIR));
+
+        try (Stream<Path> paths = Files.walk(root.resolve(TEMP_DIR))) {
+            paths.filter(Files::isRegularFile).forEach(path -> path.toFile().delete());
+        }
+
+        int pending = 0;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.filter(Files::isRegularFile).sorted(Comparator.naturalOrder()).toList()) {
+                if (path.startsWith(root.resolve(TEMP_DIR))) {
+                    continue;
+                }
+                String objectName = root.relativize(path).toString().replace('\\', '/');
+                if (fileRepository.claimPending(objectName, node) > 0) {
+                    pending++;
+                } else {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+
+        log.info("Spool {} at {} recovered {} pending uploads", node, root, pending);
+    }
+
+    private Path resolve(String objectName) {
+
+        Path path = root.resolve(objectName).normalize();
+        if (!path.startsWith(root) || path.startsWith(root.resolve(TEMP_DIR))) {
+            throw new IllegalArgumentException("Invalid object name: " + objectName);
+        }
+        return path;
+    }
+
+    private record Retry(int attempts, long nextAttempt) {
+    }
+}
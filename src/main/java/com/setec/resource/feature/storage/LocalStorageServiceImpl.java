@@ -0,0 +1,329 @@
+package com.setec.resource.feature.storage;
+
+import com.setec.resource.feature.file.stream.FileRegion;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+// objects are plain files below media.storage.directory, named like their object name
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "media.storage.type", havingValue = "local")
+public class LocalStorageServiceImpl implements StorageService {
+
+    private static final String TEMP_DIR = ".tmp";
+
+    private static final String UPLOADS_DIR = ".uploads";
+
+    private final Path root;
+
+    public LocalStorageServiceImpl(StorageProperties storageProperties) throws IOException {
+
+        if (storageProperties.getDirectory() == null) {
+            throw new IllegalStateException("media.storage.directory is required when media.storage.type is local");
+        }
+
+        this.root = Path.of(storageProperties.getDirectory()).toAbsolutePath().normalize();
+
+        Files.createDirectories(root.resolve(TEMP_DIR));
+        Files.createDirectories(root.resolve(UPLOADS_DIR));
+
+        // half written files of a previous run, nothing refers to them
+        try (Stream<Path> paths = Files.list(root.resolve(TEMP_DIR))) {
+            paths.forEach(path -> path.toFile().delete());
+        }
+
+        log.info("Local storage at {}", root);
+    }
+
+    @Override
+    public void uploadFile(MultipartFile file, String objectName) throws Exception {
+
+        Path target = resolve(objectName);
+        Path temp = newTempFile();
+        try {
+            // the container may move its own temp file instead of copying it
+            file.transferTo(temp);
+            if (Files.size(temp) != file.getSize()) {
+                throw new IOException(String.format("Expected %d bytes but received %d", file.getSize(), Files.size(temp)));
+            }
+            commit(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void uploadFile(InputStream inputStream, long size, String objectName, String contentType) throws Exception {
+
+        Path target = resolve(objectName);
+        Path temp = newTempFile();
+        try {
+            long written = Files.copy(inputStream, temp);
+            if (written != size) {
+                throw new IOException(String.format("Expected %d bytes but received %d", size, written));
+            }
+            commit(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public long uploadStream(InputStream inputStream, String objectName, String contentType) throws Exception {
+
+        Path target = resolve(objectName);
+        Path temp = newTempFile();
+        try {
+            long written = Files.copy(inputStream, temp);
+            commit(temp, target);
+            return written;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream getFile(String objectName) throws Exception {
+        return Files.newInputStream(resolve(objectName));
+    }
+
+    @Override
+    public InputStream getFile(String objectName, long offset, long length) throws Exception {
+
+        Path path = resolve(objectName);
+        if (!Files.isRegularFile(path)) {
+            throw new NoSuchFileException(objectName);
+        }
+
+        // positioned channel read, only the region is exposed
+        return new FileRegion(path, offset, length).getInputStream();
+    }
+
+    @Override
+    public Path getLocalPath(String objectName) {
+        Path path = resolve(objectName);
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws Exception {
+        Files.deleteIfExists(resolve(objectName));
+    }
+
+    @Override
+    public Map<String, String> deleteFiles(Collection<String> objectNames) {
+
+        Map<String, String> errors = new HashMap<>();
+        for (String objectName : objectNames) {
+            try {
+                Files.deleteIfExists(resolve(objectName));
+            } catch (IOException | IllegalArgumentException e) {
+                errors.put(objectName, e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public long getObjectSize(String objectName) throws Exception {
+        Path path = resolve(objectName);
+        return Files.isRegularFile(path) ? Files.size(path) : -1;
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws Exception {
+
+        // walk only the deepest folder the prefix names, not the whole store
+        int slash = prefix.lastIndexOf('/');
+        Path start = slash < 0 ? root : resolve(prefix.substring(0, slash));
+        if (!Files.isDirectory(start)) {
+            return List.of();
+        }
+
+        try (Stream<Path> paths = Files.walk(start)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> !isReserved(path))
+                    .map(path -> root.relativize(path).toString().replace('\\', '/'))
+                    .filter(objectName -> objectName.startsWith(prefix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    @Override
+    public String createMultipartUpload(String objectName, String contentType) throws Exception {
+
+        resolve(objectName);
+
+        String uploadId = UUID.randomUUID().toString();
+        Files.createDirectory(root.resolve(UPLOADS_DIR).resolve(uploadId));
+        return uploadId;
+    }
+
+    @Override
+    public void uploadPart(String objectName, String uploadId, int partNumber, byte[] data, int length) throws Exception {
+
+        Path upload = resolveUpload(uploadId);
+        Path temp = newTempFile();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(data, 0, length);
+            String etag = HexFormat.of().formatHex(digest.digest());
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+
+            // the etag is part of the name, so listing parts never has to read them
+            for (Path previous : findParts(upload, partNumber)) {
+                Files.deleteIfExists(previous);
+            }
+            Files.move(temp, upload.resolve(String.format("%05d.%s", partNumber, etag)), StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(upload);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public List<StoragePart> listParts(String objectName, String uploadId) throws Exception {
+
+        Path upload = resolveUpload(uploadId);
+
+        List<StoragePart> parts = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(upload)) {
+            for (Path path : paths.toList()) {
+                String name = path.getFileName().toString();
+                int dot = name.indexOf('.');
+                parts.add(new StoragePart(Integer.parseInt(name.substring(0, dot)), name.substring(dot + 1), Files.size(path)));
+            }
+        }
+        parts.sort(Comparator.comparingInt(StoragePart::partNumber));
+        return parts;
+    }
+
+    @Override
+    public void completeMultipartUpload(String objectName, String uploadId, List<StoragePart> parts) throws Exception {
+
+        Path target = resolve(objectName);
+        Path upload = resolveUpload(uploadId);
+        Path temp = newTempFile();
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                for (StoragePart part : parts) {
+                    Path path = upload.resolve(String.format("%05d.%s", part.partNumber(), part.etag()));
+                    if (!Files.isRegularFile(path)) {
+                        throw new IOException(String.format("Part %d with etag %s has not been uploaded", part.partNumber(), part.etag()));
+                    }
+                    // kernel to kernel copy, the parts never pass through the heap
+                    try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                        long size = in.size();
+                        for (long position = 0; position < size; ) {
+                            position += in.transferTo(position, size - position, out);
+                        }
+                    }
+                }
+            }
+            commit(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        deleteUpload(upload);
+    }
+
+    @Override
+    public void abortMultipartUpload(String objectName, String uploadId) throws Exception {
+        deleteUpload(resolveUpload(uploadId));
+    }
+
+    // same file system as the objects, so the final move is a rename
+    private Path newTempFile() {
+        return root.resolve(TEMP_DIR).resolve(UUID.randomUUID().toString());
+    }
+
+    // readers see either the old object or the complete new one, never a partial file
+    private static void commit(Path temp, Path target) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+
+        Files.createDirectories(target.getParent());
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(target.getParent());
+    }
+
+    // the rename lives in the directory entry, without this a crash can bring back the old object
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static List<Path> findParts(Path upload, int partNumber) throws IOException {
+        String prefix = String.format("%05d.", partNumber);
+        try (Stream<Path> paths = Files.list(upload)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(prefix)).toList();
+        }
+    }
+
+    private static void deleteUpload(Path upload) throws IOException {
+        try (Stream<Path> paths = Files.walk(upload)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private Path resolveUpload(String uploadId) throws IOException {
+
+        Path upload = root.resolve(UPLOADS_DIR).resolve(uploadId).normalize();
+        if (!upload.getParent().equals(root.resolve(UPLOADS_DIR))) {
+            throw new IllegalArgumentException("Invalid upload id: " + uploadId);
+        }
+        if (!Files.isDirectory(upload)) {
+            throw new NoSuchFileException("No such upload: " + uploadId);
+        }
+        return upload;
+    }
+
+    private boolean isReserved(Path path) {
+        return path.startsWith(root.resolve(TEMP_DIR)) || path.startsWith(root.resolve(UPLOADS_DIR));
+    }
+
+    private Path resolve(String objectName) {
+
+        Path path = root.resolve(objectName).normalize();
+        if (!path.startsWith(root) || path.equals(root) || isReserved(path)) {
+            throw new IllegalArgumentException("Invalid object name: " + objectName);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,27 @@
+package com.setec.resource.feature.storage;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Optional capability of a {@link StorageService} whose objects clients can fetch directly
+ * from the backend with a signed url, the local backend has no such url
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public interface PresignedUrlProvider {
+
+    /**
+     * create a presigned GET url for an object
+     *
+     * @param objectName        is the folder name and filename
+     * @param expiry            is how long the url stays valid
+     * @param extraQueryParams are response overrides such as response-content-disposition
+     * @return the signed url
+     * @throws Exception when the url cannot be signed
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    String getPresignedUrl(String objectName, Duration expiry, Map<String, String> extraQueryParams) throws Exception;
+}
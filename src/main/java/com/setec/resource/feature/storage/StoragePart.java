@@ -0,0 +1,8 @@
+package com.setec.resource.feature.storage;
+
+public record StoragePart(
+        int partNumber,
+        String etag,
+        long partSize
+) {
+}
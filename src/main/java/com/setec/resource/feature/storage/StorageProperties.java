@@ -0,0 +1,17 @@
+package com.setec.resource.feature.storage;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "media.storage")
+public class StorageProperties {
+    // minio, or local to keep objects below directory on this host
+    private String type = "minio";
+    // root of the local backend, must be one file system so writes can be moved into place atomically
+    private String directory;
+}
@@ -0,0 +1,197 @@
+package com.setec.resource.feature.storage;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage interface for the object content, implemented for MinIO and for a local directory,
+ * the backend is chosen with media.storage.type, presigned urls come from {@link PresignedUrlProvider}
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public interface StorageService {
+
+    /**
+     * upload file
+     *
+     * @param file       is the file to upload
+     * @param objectName is the folder name and filename
+     * @throws Exception catch exception when fail to upload
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void uploadFile(MultipartFile file, String objectName) throws Exception;
+
+    /**
+     * upload a stream of known length with a single put
+     *
+     * @param inputStream is the content to upload
+     * @param size        is the exact number of bytes in the stream
+     * @param objectName  is the folder name and filename
+     * @param contentType is the content type stored with the object
+     * @throws Exception catch exception when fail to upload
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void uploadFile(InputStream inputStream, long size, String objectName, String contentType) throws Exception;
+
+    /**
+     * upload a stream of unknown length, pushing multipart parts in parallel as they are read
+     *
+     * @param inputStream is the content to upload, read until end of stream
+     * @param objectName  is the folder name and filename
+     * @param contentType is the content type stored with the object
+     * @return number of bytes uploaded
+     * @throws Exception catch exception when fail to upload
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    long uploadStream(InputStream inputStream, String objectName, String contentType) throws Exception;
+
+    /**
+     * get file
+     *
+     * @param objectName is the folder name and filename
+     * @return {@link  InputStream}
+     * @throws Exception catch exception when fail to upload
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+
+    InputStream getFile(String objectName) throws Exception;
+
+    /**
+     * delete file
+     *
+     * @param objectName is the folder name and filename
+     * @throws Exception catch exception when fail to upload
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+
+    void deleteFile(String objectName) throws Exception;
+
+    /**
+     * delete many files with multi-object delete requests of up to 1000 keys each
+     *
+     * @param objectNames are the folder names and filenames
+     * @return {@link Map} of object name to error message for the objects that could not be deleted
+     * @throws Exception catch exception when the delete requests fail
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    Map<String, String> deleteFiles(Collection<String> objectNames) throws Exception;
+
+    /**
+     * get the size of an object
+     *
+     * @param objectName is the folder name and filename
+     * @return the object size in bytes, or -1 when the object does not exist
+     * @throws Exception catch exception when the object cannot be read
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    long getObjectSize(String objectName) throws Exception;
+
+    /**
+     * list the objects below a prefix, including nested folders
+     *
+     * @param prefix is the leading part of the object names
+     * @return {@link List} of object names
+     * @throws Exception catch exception when the listing fails
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    List<String> listFiles(String prefix) throws Exception;
+
+    /**
+     * get a byte range of a file
+     *
+     * @param objectName is the folder name and filename
+     * @param offset     is the first byte to read
+     * @param length     is the number of bytes to read, the stream ends earlier at the end of the object
+     * @return {@link  InputStream} of the range
+     * @throws Exception catch exception when the object cannot be read
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    InputStream getFile(String objectName, long offset, long length) throws Exception;
+
+    /**
+     * get the file holding an object when the backend keeps it on this host, it is served with a zero-copy transfer
+     *
+     * @param objectName is the folder name and filename
+     * @return {@link Path} of the object, or null when the object is remote or does not exist
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    Path getLocalPath(String objectName);
+
+    /**
+     * start a multipart upload whose parts are sent by separate requests
+     *
+     * @param objectName  is the folder name and filename
+     * @param contentType is the content type stored with the object
+     * @return the upload id
+     * @throws Exception catch exception when fail to upload
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    String createMultipartUpload(String objectName, String contentType) throws Exception;
+
+    /**
+     * upload one part of a multipart upload, uploading the same part number again replaces it
+     *
+     * @param objectName is the folder name and filename
+     * @param uploadId   is the upload id
+     * @param partNumber is the 1-based part number
+     * @param data       is the part content
+     * @param length     is the number of bytes of data to send
+     * @throws Exception catch exception when fail to upload
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void uploadPart(String objectName, String uploadId, int partNumber, byte[] data, int length) throws Exception;
+
+    /**
+     * list the parts stored for a multipart upload
+     *
+     * @param objectName is the folder name and filename
+     * @param uploadId   is the upload id
+     * @return {@link List<StoragePart>} ordered by part number
+     * @throws Exception catch exception when fail to list
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    List<StoragePart> listParts(String objectName, String uploadId) throws Exception;
+
+    /**
+     * assemble the stored parts into the final object
+     *
+     * @param objectName is the folder name and filename
+     * @param uploadId   is the upload id
+     * @param parts      are the parts to assemble, ordered by part number
+     * @throws Exception catch exception when fail to complete
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void completeMultipartUpload(String objectName, String uploadId, List<StoragePart> parts) throws Exception;
+
+    /**
+     * drop a multipart upload and the parts stored for it
+     *
+     * @param objectName is the folder name and filename
+     * @param uploadId   is the upload id
+     * @throws Exception catch exception when fail to abort
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void abortMultipartUpload(String objectName, String uploadId) throws Exception;
+
+}
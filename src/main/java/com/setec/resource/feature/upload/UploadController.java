@@ -0,0 +1,54 @@
+package com.setec.resource.feature.upload;
+
+import com.setec.resource.feature.file.dto.FileResponse;
+import com.setec.resource.feature.upload.dto.CreateUploadRequest;
+import com.setec.resource.feature.upload.dto.UploadSessionResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+/**
+ * Resumable uploads: create a session, PUT numbered chunks, check progress, then complete.
+ */
+@RestController
+@RequestMapping("/api/v1/uploads")
+@RequiredArgsConstructor
+public class UploadController {
+
+    private final UploadService uploadService;
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping
+    UploadSessionResponse createSession(@Valid @RequestBody CreateUploadRequest createUploadRequest) {
+        return uploadService.createSession(createUploadRequest);
+    }
+
+    // raw chunk body, the last chunk may be shorter than chunkSize
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @PutMapping("/{sessionId}/chunks/{index}")
+    void uploadChunk(@PathVariable String sessionId, @PathVariable int index,
+                     HttpServletRequest request) throws IOException {
+        uploadService.uploadChunk(sessionId, index, request.getInputStream());
+    }
+
+    @GetMapping("/{sessionId}")
+    UploadSessionResponse getSession(@PathVariable String sessionId) {
+        return uploadService.getSession(sessionId);
+    }
+
+    @ResponseStatus(HttpStatus.CREATED)
+    @PostMapping("/{sessionId}/complete")
+    FileResponse completeSession(@PathVariable String sessionId) {
+        return uploadService.completeSession(sessionId);
+    }
+
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @DeleteMapping("/{sessionId}")
+    void abortSession(@PathVariable String sessionId) {
+        uploadService.abortSession(sessionId);
+    }
+}
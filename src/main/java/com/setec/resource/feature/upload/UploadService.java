@@ -0,0 +1,66 @@
+package com.setec.resource.feature.upload;
+
+import com.setec.resource.feature.file.dto.FileResponse;
+import com.setec.resource.feature.upload.dto.CreateUploadRequest;
+import com.setec.resource.feature.upload.dto.UploadSessionResponse;
+
+import java.io.InputStream;
+
+/**
+ * Upload interface which contains methods for resumable chunked uploads backed by MinIO multipart upload
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public interface UploadService {
+
+    /**
+     * start a resumable upload session
+     *
+     * @param createUploadRequest is the file description and chunk size
+     * @return {@link UploadSessionResponse}
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    UploadSessionResponse createSession(CreateUploadRequest createUploadRequest);
+
+    /**
+     * store one chunk, chunks can be sent in any order, in parallel and again after a failure
+     *
+     * @param sessionId   is the upload session id
+     * @param index       is the 0-based chunk index
+     * @param inputStream is the chunk content
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void uploadChunk(String sessionId, int index, InputStream inputStream);
+
+    /**
+     * get the session with the chunks received so far
+     *
+     * @param sessionId is the upload session id
+     * @return {@link UploadSessionResponse}
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    UploadSessionResponse getSession(String sessionId);
+
+    /**
+     * assemble all chunks into the final file and save its metadata
+     *
+     * @param sessionId is the upload session id
+     * @return {@link FileResponse}
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    FileResponse completeSession(String sessionId);
+
+    /**
+     * abort the session and drop the chunks stored for it
+     *
+     * @param sessionId is the upload session id
+     * @author Pov soknem
+     * @since 1.0 (2024)
+     */
+    void abortSession(String sessionId);
+}
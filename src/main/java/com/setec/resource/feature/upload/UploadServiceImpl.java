@@ -0,0 +1,270 @@
+package com.setec.resource.feature.upload;
+
+import com.setec.resource.domain.UploadSession;
+import com.setec.resource.feature.file.FileService;
+import com.setec.resource.feature.file.dto.FileResponse;
+import com.setec.resource.feature.minio.MinioProperties;
+import com.setec.resource.feature.storage.StoragePart;
+import com.setec.resource.feature.storage.StorageService;
+import com.setec.resource.feature.upload.dto.CreateUploadRequest;
+import com.setec.resource.feature.upload.dto.UploadChunkResponse;
+import com.setec.resource.feature.upload.dto.UploadSessionResponse;
+import com.setec.resource.util.MediaUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadServiceImpl implements UploadService {
+
+    // S3 multipart limits: every part but the last is at least 5MB, at most 10000 parts
+    private static final long MIN_CHUNK_SIZE = DataSize.ofMegabytes(5).toBytes();
+    private static final long MAX_CHUNK_SIZE = DataSize.ofMegabytes(64).toBytes();
+    private static final int MAX_CHUNKS = 10_000;
+
+    private final UploadSessionRepository uploadSessionRepository;
+
+    private final FileService fileService;
+
+    private final StorageService storageService;
+
+    private final MinioProperties minioProperties;
+
+    private final UploadSessionProperties uploadSessionProperties;
+
+    @Override
+    public UploadSessionResponse createSession(CreateUploadRequest createUploadRequest) {
+
+        String folderName = MediaUtil.getValidFolder(createUploadRequest.contentType());
+
+        String extension = MediaUtil.extractExtension(createUploadRequest.fileName());
+
+        long fileSize = createUploadRequest.fileSize();
+
+        // the same limit as a single request upload, chunks make it resumable, not larger
+        long maxFileSize = uploadSessionProperties.getMaxFileSize().toBytes();
+        if (fileSize > maxFileSize) {
+            throw new ResponseStatusException(HttpStatus.CONTENT_TOO_LARGE,
+                    String.format("File size must not exceed %d bytes", maxFileSize));
+        }
+
+        long chunkSize = createUploadRequest.chunkSize() != null
+                ? createUploadRequest.chunkSize()
+                : minioProperties.getUpload().getPartSize().toBytes();
+
+        // grow the chunk when the file would otherwise need more parts than S3 allows
+        chunkSize = Math.max(chunkSize, (fileSize + MAX_CHUNKS - 1) / MAX_CHUNKS);
+
+        if ((chunkSize < MIN_CHUNK_SIZE && chunkSize < fileSize) || chunkSize > MAX_CHUNK_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Chunk size must be between %d and %d bytes", MIN_CHUNK_SIZE, MAX_CHUNK_SIZE));
+        }
+
+        String fileName = fileService.generateFileName(extension);
+
+        String uploadId;
+        try {
+            uploadId = storageService.createMultipartUpload(folderName + "/" + fileName, createUploadRequest.contentType());
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(UUID.randomUUID().toString());
+        session.setUploadId(uploadId);
+        session.setFileName(fileName);
+        session.setContentType(createUploadRequest.contentType());
+        session.setFolder(folderName);
+        session.setExtension(extension);
+        session.setFileSize(fileSize);
+        session.setChunkSize(chunkSize);
+        session.setTotalChunks((int) Math.max(1, (fileSize + chunkSize - 1) / chunkSize));
+        session.setCreatedAt(LocalDateTime.now());
+        session.setExpiresAt(session.getCreatedAt().plus(uploadSessionProperties.getExpiry()));
+
+        uploadSessionRepository.save(session);
+
+        return toResponse(session, List.of());
+    }
+
+    @Override
+    public void uploadChunk(String sessionId, int index, InputStream inputStream) {
+
+        UploadSession session = findSession(sessionId);
+
+        if (index < 0 || index >= session.getTotalChunks()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("Chunk index must be between 0 and %d", session.getTotalChunks() - 1));
+        }
+
+        int expectedSize = (int) expectedChunkSize(session, index);
+
+        byte[] data = new byte[expectedSize];
+        try {
+            int read = inputStream.readNBytes(data, 0, expectedSize);
+            if (read != expectedSize || inputStream.read() != -1) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        String.format("Chunk %d must be exactly %d bytes", index, expectedSize));
+            }
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Chunk could not be read: " + e.getMessage());
+        }
+
+        try {
+            storageService.uploadPart(objectName(session), session.getUploadId(), index + 1, data, expectedSize);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+
+        uploadSessionRepository.updateExpiresAt(sessionId, LocalDateTime.now().plus(uploadSessionProperties.getExpiry()));
+    }
+
+    @Override
+    public UploadSessionResponse getSession(String sessionId) {
+
+        UploadSession session = findSession(sessionId);
+
+        return toResponse(session, listParts(session));
+    }
+
+    @Override
+    public FileResponse completeSession(String sessionId) {
+
+        UploadSession session = findSession(sessionId);
+
+        List<StoragePart> parts = listParts(session);
+
+        List<Integer> missing = new ArrayList<>();
+        for (int index = 0, next = 0; index < session.getTotalChunks(); index++) {
+            if (next < parts.size() && parts.get(next).partNumber() == index + 1) {
+                next++;
+            } else {
+                missing.add(index);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Missing chunks: " + missing);
+        }
+
+        try {
+            storageService.completeMultipartUpload(objectName(session), session.getUploadId(), parts);
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+
+        // same metadata row as a single request upload
+        FileResponse fileResponse = fileService.saveFile(session.getFileName(), session.getFolder(),
+                session.getExtension(), session.getContentType(), session.getFileSize(), null);
+
+        uploadSessionRepository.delete(session);
+
+        return fileResponse;
+    }
+
+    @Override
+    public void abortSession(String sessionId) {
+
+        UploadSession session = findSession(sessionId);
+
+        try {
+            storageService.abortMultipartUpload(objectName(session), session.getUploadId());
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+
+        uploadSessionRepository.delete(session);
+    }
+
+    // abandoned sessions would keep their multipart upload and its parts in storage forever
+    @Scheduled(fixedDelayString = "${media.upload-session.cleanup-interval:1h}")
+    public void abortExpiredSessions() {
+
+        LocalDateTime now = LocalDateTime.now();
+        List<UploadSession> expired = uploadSessionRepository.findExpired(now, now.minus(uploadSessionProperties.getExpiry()),
+                Limit.of(uploadSessionProperties.getCleanupBatchSize()));
+
+        for (UploadSession session : expired) {
+            try {
+                storageService.abortMultipartUpload(objectName(session), session.getUploadId());
+            } catch (Exception e) {
+                // the upload may already be gone in storage, the session is dropped either way
+                log.warn("Could not abort expired upload {} of {}, its parts may be left behind: {}",
+                        session.getUploadId(), objectName(session), e.getMessage());
+            }
+            uploadSessionRepository.delete(session);
+        }
+
+        if (!expired.isEmpty()) {
+            log.info("Aborted {} expired upload sessions", expired.size());
+        }
+    }
+
+    // expired sessions are treated as gone even before the cleanup has removed them
+    private UploadSession findSession(String sessionId) {
+        return uploadSessionRepository.findById(sessionId)
+                .filter(session -> !isExpired(session))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        String.format("upload session = %s has not been found", sessionId)));
+    }
+
+    private boolean isExpired(UploadSession session) {
+        LocalDateTime expiresAt = session.getExpiresAt() != null
+                ? session.getExpiresAt()
+                : session.getCreatedAt().plus(uploadSessionProperties.getExpiry());
+        return !expiresAt.isAfter(LocalDateTime.now());
+    }
+
+    // storage is the source of truth for received chunks, so progress survives a restart of this service
+    private List<StoragePart> listParts(UploadSession session) {
+        try {
+            return storageService.listParts(objectName(session), session.getUploadId());
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    private static long expectedChunkSize(UploadSession session, int index) {
+        long offset = index * session.getChunkSize();
+        return Math.min(session.getChunkSize(), session.getFileSize() - offset);
+    }
+
+    private static String objectName(UploadSession session) {
+        return session.getFolder() + "/" + session.getFileName();
+    }
+
+    private static UploadSessionResponse toResponse(UploadSession session, List<StoragePart> parts) {
+
+        List<UploadChunkResponse> chunks = parts.stream()
+                .map(part -> UploadChunkResponse.builder()
+                        .index(part.partNumber() - 1)
+                        .offset((part.partNumber() - 1) * session.getChunkSize())
+                        .size(part.partSize())
+                        .build())
+                .toList();
+
+        return UploadSessionResponse.builder()
+                .id(session.getId())
+                .fileName(session.getFileName())
+                .contentType(session.getContentType())
+                .fileSize(session.getFileSize())
+                .chunkSize(session.getChunkSize())
+                .totalChunks(session.getTotalChunks())
+                .receivedBytes(chunks.stream().mapToLong(UploadChunkResponse::size).sum())
+                .receivedChunks(chunks)
+                .build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.setec.resource.feature.upload;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "media.upload-session")
+public class UploadSessionProperties {
+    // largest file a chunked upload may announce
+    private DataSize maxFileSize = DataSize.ofMegabytes(1000);
+    // a session without a chunk for this long is aborted together with its multipart upload
+    private Duration expiry = Duration.ofHours(24);
+    // how often expired sessions are looked for
+    private Duration cleanupInterval = Duration.ofHours(1);
+    // expired sessions aborted per run
+    private int cleanupBatchSize = 100;
+}
@@ -0,0 +1,24 @@
+package com.setec.resource.feature.upload;
+
+import com.setec.resource.domain.UploadSession;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+
+    @Query("select s from UploadSession s where s.expiresAt < :now" +
+            " or (s.expiresAt is null and s.createdAt < :createdBefore) order by s.createdAt")
+    List<UploadSession> findExpired(LocalDateTime now, LocalDateTime createdBefore, Limit limit);
+
+    // every received chunk keeps the session alive
+    @Modifying
+    @Transactional
+    @Query("update UploadSession s set s.expiresAt = :expiresAt where s.id = :id")
+    int updateExpiresAt(String id, LocalDateTime expiresAt);
+}
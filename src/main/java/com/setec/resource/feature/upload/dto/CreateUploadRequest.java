@@ -0,0 +1,19 @@
+package com.setec.resource.feature.upload.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public record CreateUploadRequest(
+        @NotBlank
+        String fileName,
+        @NotBlank
+        String contentType,
+        @NotNull
+        @Positive
+        Long fileSize,
+        // optional, defaults to minio.upload.part-size
+        @Positive
+        Long chunkSize
+) {
+}
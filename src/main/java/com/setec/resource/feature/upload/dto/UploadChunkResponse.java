@@ -0,0 +1,11 @@
+package com.setec.resource.feature.upload.dto;
+
+import lombok.Builder;
+
+@Builder
+public record UploadChunkResponse(
+        int index,
+        long offset,
+        long size
+) {
+}
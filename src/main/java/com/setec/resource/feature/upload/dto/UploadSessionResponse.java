@@ -0,0 +1,18 @@
+package com.setec.resource.feature.upload.dto;
+
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record UploadSessionResponse(
+        String id,
+        String fileName,
+        String contentType,
+        Long fileSize,
+        Long chunkSize,
+        Integer totalChunks,
+        Long receivedBytes,
+        List<UploadChunkResponse> receivedChunks
+) {
+}
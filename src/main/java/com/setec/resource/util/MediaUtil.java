@@ -1,10 +1,50 @@
 package com.setec.resource.util;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.UUID;
+
 public class MediaUtil {
 
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // RFC 9562 version 7: 48 bit unix millis then 74 random bits, names of newer uploads sort after older ones
+    // so inserts land on the right edge of the fileName index instead of on random leaf blocks
+    public static UUID uuidV7() {
+        long mostSigBits = (System.currentTimeMillis() << 16) | 0x7000L | (RANDOM.nextLong() & 0x0FFFL);
+        long leastSigBits = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
     public static String extractExtension(String mediaName) {
         int lastDotIndex = mediaName.lastIndexOf(".");
         return mediaName.substring(lastDotIndex + 1);
     }
 
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    public static String getValidFolder(String contentType) {
+
+        if (contentType == null || !((contentType.startsWith("video/") || contentType.startsWith("image/") || contentType.equals("application/pdf")))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unsupported file type.");
+        }
+
+        return contentType.split("/")[0];
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,292 @@
+package com.setec.resource.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Moves the moov box of an MP4/MOV file in front of its media data so playback can start
+ * without first fetching the tail of the file. Only box headers and the moov box are read,
+ * the media data is copied file to file with {@link FileChannel#transferTo}.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public final class Mp4FastStart {
+
+    // moov holds the sample tables, a few MB even for long videos
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+
+    // boxes on the path from moov down to the chunk offset tables
+    private static final Set<String> CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl");
+
+    private Mp4FastStart() {
+    }
+
+    /**
+     * check from the box headers alone whether moov comes after mdat
+     *
+     * @param inputStream is the file content, only headers are read and payloads skipped
+     * @return true when the file is an ISO media file that is not fast-start yet
+     */
+    public static boolean needsFastStart(InputStream inputStream) throws IOException {
+
+        byte[] header = new byte[16];
+        boolean first = true;
+        boolean mdatSeen = false;
+
+        while (true) {
+            if (inputStream.readNBytes(header, 0, 8) < 8) {
+                return false;
+            }
+
+            long size = readUnsignedInt(header, 0);
+            String type = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+            int headerSize = 8;
+            if (size == 1) {
+                if (inputStream.readNBytes(header, 8, 8) < 8) {
+                    return false;
+                }
+                size = ByteBuffer.wrap(header, 8, 8).getLong();
+                headerSize = 16;
+            }
+
+            // size 0 runs to the end of the file, nothing can follow it
+            if (size == 0) {
+                return !first && type.equals("moov") && mdatSeen;
+            }
+            if (size < headerSize || (first && !type.equals("ftyp"))) {
+                return false;
+            }
+            first = false;
+
+            switch (type) {
+                case "moov" -> {
+                    return mdatSeen;
+                }
+                case "moof" -> {
+                    // fragmented files keep their own layout
+                    return false;
+                }
+                case "mdat" -> mdatSeen = true;
+                default -> {
+                }
+            }
+
+            if (!skip(inputStream, size - headerSize)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * write a fast-start copy of a file
+     *
+     * @param source is the original file
+     * @param target is where the rewritten file is written
+     * @return true when the target was written, false when the source needs no or cannot take a rewrite
+     */
+    public static boolean rewrite(Path source, Path target) throws IOException {
+
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+
+            long fileSize = in.size();
+            List<Box> boxes = readTopLevel(in, fileSize);
+            if (boxes == null) {
+                return false;
+            }
+
+            Box moov = null;
+            Box mdat = null;
+            for (Box box : boxes) {
+                switch (box.type()) {
+                    case "moov" -> moov = moov == null ? box : moov;
+                    case "mdat" -> mdat = mdat == null ? box : mdat;
+                    case "moof" -> {
+                        return false;
+                    }
+                    default -> {
+                    }
+                }
+            }
+
+            if (moov == null || mdat == null || moov.offset() < mdat.offset() || moov.size() > MAX_MOOV_SIZE) {
+                return false;
+            }
+
+            ByteBuffer moovData = ByteBuffer.allocate((int) moov.size());
+            while (moovData.hasRemaining()) {
+                if (in.read(moovData, moov.offset() + moovData.position()) < 0) {
+                    return false;
+                }
+            }
+
+            // a size 0 moov ran to the end of the file, in front of mdat it needs its real size
+            if (moovData.getInt(0) == 0) {
+                moovData.putInt(0, (int) moov.size());
+            }
+
+            // moov is inserted in front of the first mdat, everything between shifts by its size
+            long insertAt = mdat.offset();
+            if (!patchChunkOffsets(moovData, moov.headerSize(), (int) moov.size(), insertAt, moov.offset(), moov.size())) {
+                return false;
+            }
+
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                transfer(in, 0, insertAt, out);
+                moovData.rewind();
+                while (moovData.hasRemaining()) {
+                    out.write(moovData);
+                }
+                transfer(in, insertAt, moov.offset() - insertAt, out);
+                transfer(in, moov.offset() + moov.size(), fileSize - moov.offset() - moov.size(), out);
+            }
+
+            return true;
+        }
+    }
+
+    private static List<Box> readTopLevel(FileChannel in, long fileSize) throws IOException {
+
+        List<Box> boxes = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(16);
+
+        long offset = 0;
+        while (offset < fileSize) {
+            header.clear().limit(8);
+            if (readFully(in, header, offset) < 8) {
+                return null;
+            }
+
+            long size = Integer.toUnsignedLong(header.getInt(0));
+            String type = new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1);
+            int headerSize = 8;
+            if (size == 1) {
+                header.limit(16);
+                if (readFully(in, header, offset) < 16) {
+                    return null;
+                }
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = fileSize - offset;
+            }
+
+            if (size < headerSize || offset + size > fileSize || (boxes.isEmpty() && !type.equals("ftyp"))) {
+                return null;
+            }
+
+            boxes.add(new Box(type, offset, size, headerSize));
+            offset += size;
+        }
+
+        return boxes;
+    }
+
+    private static boolean patchChunkOffsets(ByteBuffer data, int start, int end, long insertAt, long moovOffset, long shift) {
+
+        int position = start;
+        while (position + 8 <= end) {
+            long size = Integer.toUnsignedLong(data.getInt(position));
+            String type = new String(data.array(), position + 4, 4, StandardCharsets.ISO_8859_1);
+            int headerSize = 8;
+            if (size == 1) {
+                if (position + 16 > end) {
+                    return false;
+                }
+                size = data.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                return false;
+            }
+
+            int payload = position + headerSize;
+            int boxEnd = (int) (position + size);
+
+            if (CONTAINERS.contains(type)) {
+                if (!patchChunkOffsets(data, payload, boxEnd, insertAt, moovOffset, shift)) {
+                    return false;
+                }
+            } else if (type.equals("stco") || type.equals("co64")) {
+                boolean wide = type.equals("co64");
+                // version and flags, then the entry count
+                long count = Integer.toUnsignedLong(data.getInt(payload + 4));
+                int entries = payload + 8;
+                if (entries + count * (wide ? 8 : 4) > boxEnd) {
+                    return false;
+                }
+                for (int i = 0; i < count; i++) {
+                    int at = entries + i * (wide ? 8 : 4);
+                    long chunkOffset = wide ? data.getLong(at) : Integer.toUnsignedLong(data.getInt(at));
+                    if (chunkOffset >= insertAt && chunkOffset < moovOffset) {
+                        chunkOffset += shift;
+                    }
+                    if (wide) {
+                        data.putLong(at, chunkOffset);
+                    } else if (chunkOffset > 0xFFFFFFFFL) {
+                        // would need an stco to co64 upgrade, leave such files as they are
+                        return false;
+                    } else {
+                        data.putInt(at, (int) chunkOffset);
+                    }
+                }
+            }
+
+            position = boxEnd;
+        }
+
+        return true;
+    }
+
+    private static void transfer(FileChannel in, long position, long count, FileChannel out) throws IOException {
+        while (count > 0) {
+            long transferred = in.transferTo(position, count, out);
+            if (transferred <= 0) {
+                throw new IOException("Unexpected end of file while copying");
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    private static int readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    private static boolean skip(InputStream inputStream, long count) throws IOException {
+        while (count > 0) {
+            long skipped = inputStream.skip(count);
+            if (skipped <= 0) {
+                if (inputStream.read() < 0) {
+                    return false;
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+        return true;
+    }
+
+    private static long readUnsignedInt(byte[] bytes, int offset) {
+        return Integer.toUnsignedLong(ByteBuffer.wrap(bytes, offset, 4).getInt());
+    }
+
+    private record Box(String type, long offset, long size, int headerSize) {
+    }
+}
@@ -0,0 +1,311 @@
+package com.setec.resource.base;
+
+import com.setec.resource.base.BaseSpecification.FilterDto;
+import com.setec.resource.base.BaseSpecification.SpecsDto;
+import com.setec.resource.base.BaseSpecification.SpecsDto.Operation;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernatePersistenceConfiguration;
+import org.hibernate.tool.schema.Action;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BaseSpecificationTest {
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private final BaseSpecification<Sample> specification = new BaseSpecification<>();
+
+    @BeforeAll
+    static void createRows() {
+        entityManagerFactory = new HibernatePersistenceConfiguration("base-specification")
+                .managedClasses(Sample.class, Owner.class)
+                .jdbcUrl("jdbc:h2:mem:base-specification;DB_CLOSE_DELAY=-1")
+                .schemaToolingAction(Action.CREATE_DROP)
+                .createEntityManagerFactory();
+
+        entityManagerFactory.runInTransaction(entityManager -> {
+            Owner root = owner(10, "root", null);
+            Owner ann = owner(11, "ann", root);
+            Owner bob = owner(12, "bob", null);
+            List.of(root, ann, bob).forEach(entityManager::persist);
+
+            // rows 1 to 3 hold increasing values in every typed column
+            entityManager.persist(sample(1, "alpha", 0, ann));
+            entityManager.persist(sample(2, "Beta", 1, bob));
+            entityManager.persist(sample(3, "gamma", 2, ann));
+            // rows 4 to 8 only carry names with LIKE wildcards and the escape character
+            entityManager.persist(sample(4, "50%", -1, null));
+            entityManager.persist(sample(5, "50_", -1, null));
+            entityManager.persist(sample(6, "500", -1, null));
+            entityManager.persist(sample(7, "a\\b", -1, null));
+            entityManager.persist(sample(8, "axb", -1, null));
+        });
+    }
+
+    @AfterAll
+    static void close() {
+        entityManagerFactory.close();
+    }
+
+    // the second specification is the predicate the engine built before column metadata was cached,
+    // both have to select the same rows and those rows have to be the expected ones
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @MethodSource("sameRowsAsBefore")
+    void selectsTheSameRowsAsBefore(String column, Operation operation, String value, Specification<Sample> before, List<Long> expected) {
+        assertEquals(expected, select(before));
+        assertEquals(expected, select(specification.filter(filter(FilterDto.GlobalOperator.AND, specs(column, operation, value)))));
+    }
+
+    static Stream<Arguments> sameRowsAsBefore() {
+        return Stream.of(
+                Stream.of(
+                        Arguments.of("name", Operation.EQUAL, "Beta", where(cb -> root -> cb.equal(root.get("name"), "Beta")), List.of(2L)),
+                        Arguments.of("name", Operation.LIKE, "ALP", where(cb -> root -> cb.like(cb.lower(root.get("name")), "%alp%")), List.of(1L)),
+                        Arguments.of("name", Operation.IN, "alpha,gamma", where(cb -> root -> root.get("name").in(List.of("alpha", "gamma"))), List.of(1L, 3L)),
+                        Arguments.of("active", Operation.EQUAL, "false", where(cb -> root -> cb.equal(root.get("active"), false)), List.of(2L))),
+                ordered("quantity", Integer::parseInt, "1", "2", "3"),
+                ordered("price", Double::parseDouble, "1.5", "2.5", "3.5"),
+                ordered("releaseDate", LocalDate::parse, "2024-01-01", "2024-02-01", "2024-03-01"),
+                ordered("openTime", LocalTime::parse, "08:00", "09:00", "10:00"),
+                ordered("updatedAt", LocalDateTime::parse, "2024-01-01T08:00", "2024-02-01T09:00", "2024-03-01T10:00"),
+                // Long and Instant columns were rejected before, these pin the predicates built for them now
+                ordered("fileSize", Long::parseLong, "10", "20", "30"),
+                ordered("publishedAt", Instant::parse, "2024-01-01T08:00:00Z", "2024-02-01T09:00:00Z", "2024-03-01T10:00:00Z")
+        ).flatMap(Function.identity());
+    }
+
+    // rows 1, 2 and 3 hold first, second and third
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Stream<Arguments> ordered(String column, Function<String, Comparable> parse, String first, String second, String third) {
+        return Stream.of(
+                Arguments.of(column, Operation.EQUAL, second,
+                        where(cb -> root -> cb.equal(root.get(column), parse.apply(second))), List.of(2L)),
+                Arguments.of(column, Operation.IN, first + "," + third,
+                        where(cb -> root -> root.get(column).in(List.of(parse.apply(first), parse.apply(third)))), List.of(1L, 3L)),
+                Arguments.of(column, Operation.GREATER_THAN, first,
+                        where(cb -> root -> cb.greaterThan(root.<Comparable>get(column), parse.apply(first))), List.of(2L, 3L)),
+                Arguments.of(column, Operation.LESS_THAN, third,
+                        where(cb -> root -> cb.lessThan(root.<Comparable>get(column), parse.apply(third))), List.of(1L, 2L)),
+                Arguments.of(column, Operation.BETWEEN, second + "," + third,
+                        where(cb -> root -> cb.between(root.<Comparable>get(column), parse.apply(second), parse.apply(third))), List.of(2L, 3L)));
+    }
+
+    @Test
+    void startsWithIsCaseSensitive() {
+        assertEquals(List.of(2L), select(specification.filter(filter(FilterDto.GlobalOperator.AND, specs("name", Operation.STARTS_WITH, "Be")))));
+        assertEquals(List.of(), select(specification.filter(filter(FilterDto.GlobalOperator.AND, specs("name", Operation.STARTS_WITH, "be")))));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', value = {
+            "50   | 4,5,6",
+            "50%  | 4",
+            "50_  | 5",
+            "a\\  | 7",
+            "a\\b | 7"
+    })
+    void startsWithEscapesLikeWildcards(String prefix, String expected) {
+        List<Long> ids = select(specification.filter(filter(FilterDto.GlobalOperator.AND, specs("name", Operation.STARTS_WITH, prefix))));
+
+        assertEquals(Stream.of(expected.split(",")).map(Long::valueOf).toList(), ids);
+    }
+
+    // the old engine accepted inherited columns in validation and then answered 400 from getDeclaredField
+    @Test
+    void filtersOnInheritedFields() {
+        List<Long> ids = select(specification.filter(filter(FilterDto.GlobalOperator.AND,
+                specs("createdAt", Operation.GREATER_THAN, "2024-01-01T00:00"))));
+
+        assertEquals(List.of(2L, 3L), ids);
+        assertEquals(ids, select(where(cb -> root -> cb.greaterThan(root.get("createdAt"), LocalDateTime.parse("2024-01-01T00:00")))));
+    }
+
+    @Test
+    void filtersThroughJoins() {
+        SpecsDto owner = specs("name", Operation.EQUAL, "ann");
+        owner.setJoinTable("owner");
+        SpecsDto parent = specs("name", Operation.EQUAL, "root");
+        parent.setJoinTable("owner.parent");
+
+        // twice, the second time the join path comes from the cache
+        for (int i = 0; i < 2; i++) {
+            assertEquals(List.of(1L, 3L), select(specification.filter(filter(FilterDto.GlobalOperator.AND, owner))));
+            assertEquals(List.of(1L, 3L), select(specification.filter(filter(FilterDto.GlobalOperator.AND, parent))));
+        }
+        assertEquals(select(where(cb -> root -> cb.equal(root.join("owner").get("name"), "ann"))),
+                select(specification.filter(filter(FilterDto.GlobalOperator.AND, owner))));
+    }
+
+    @ParameterizedTest(name = "{0}.{1}")
+    @CsvSource({
+            "owner.missing, name",
+            "missing,       name",
+            "name,          name",
+            "owner..parent, name",
+            "owner,         missing"
+    })
+    void rejectsInvalidJoinPaths(String joinTable, String column) {
+        SpecsDto specs = specs(column, Operation.EQUAL, "ann");
+        specs.setJoinTable(joinTable);
+
+        assertBadRequest(filter(FilterDto.GlobalOperator.AND, specs));
+    }
+
+    @ParameterizedTest(name = "{0} {1} {2}")
+    @CsvSource({
+            "missing,  EQUAL,        x",
+            "name,     GREATER_THAN, a",
+            "name,     BETWEEN,      'a,b'",
+            "active,   IN,           true",
+            "active,   LESS_THAN,    true",
+            "quantity, LIKE,         1",
+            "quantity, STARTS_WITH,  1",
+            "quantity, BETWEEN,      1",
+            "quantity, EQUAL,        one",
+            "amount,   EQUAL,        1",
+            "owner,    EQUAL,        1",
+            "quantity, ,             1"
+    })
+    void rejectsUnsupportedFilters(String column, Operation operation, String value) {
+        assertBadRequest(filter(FilterDto.GlobalOperator.AND, specs(column, operation, value)));
+    }
+
+    @Test
+    void combinesWithTheGlobalOperator() {
+        SpecsDto ann = specs("name", Operation.EQUAL, "ann");
+        ann.setJoinTable("owner");
+        SpecsDto cheap = specs("price", Operation.LESS_THAN, "2");
+
+        assertEquals(List.of(1L), select(specification.filter(filter(FilterDto.GlobalOperator.AND, ann, cheap))));
+        assertEquals(List.of(1L, 3L), select(specification.filter(filter(FilterDto.GlobalOperator.OR, ann, cheap))));
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), select(specification.filter(null)));
+    }
+
+    private void assertBadRequest(FilterDto filter) {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> select(specification.filter(filter)));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    private static List<Long> select(Specification<Sample> specification) {
+        return entityManagerFactory.callInTransaction(entityManager -> {
+            CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+            CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+            Root<Sample> root = query.from(Sample.class);
+            Path<Long> id = root.get("id");
+            query.select(id)
+                    .where(specification.toPredicate(root, query, criteriaBuilder))
+                    .orderBy(criteriaBuilder.asc(id));
+            return entityManager.createQuery(query).getResultList();
+        });
+    }
+
+    private static Specification<Sample> where(Function<CriteriaBuilder, Function<Root<Sample>, Predicate>> predicate) {
+        return (root, query, criteriaBuilder) -> predicate.apply(criteriaBuilder).apply(root);
+    }
+
+    private static FilterDto filter(FilterDto.GlobalOperator operator, SpecsDto... specs) {
+        FilterDto filter = new FilterDto();
+        filter.setGlobalOperator(operator);
+        filter.setSpecsDto(List.of(specs));
+        return filter;
+    }
+
+    private static SpecsDto specs(String column, Operation operation, String value) {
+        SpecsDto specs = new SpecsDto();
+        specs.setColumn(column);
+        specs.setOperation(operation);
+        specs.setValue(value);
+        return specs;
+    }
+
+    private static Owner owner(long id, String name, Owner parent) {
+        Owner owner = new Owner();
+        owner.id = id;
+        owner.name = name;
+        owner.parent = parent;
+        return owner;
+    }
+
+    // index 0, 1 or 2 picks the first, second or third value of every typed column, -1 leaves them null
+    private static Sample sample(long id, String name, int index, Owner owner) {
+        Sample sample = new Sample();
+        sample.id = id;
+        sample.name = name;
+        sample.owner = owner;
+        if (index >= 0) {
+            sample.quantity = index + 1;
+            sample.fileSize = (index + 1) * 10L;
+            sample.price = index + 1.5;
+            sample.active = index != 1;
+            sample.amount = BigDecimal.valueOf(index + 1);
+            sample.releaseDate = LocalDate.of(2024, index + 1, 1);
+            sample.openTime = LocalTime.of(8 + index, 0);
+            sample.updatedAt = LocalDateTime.of(2024, index + 1, 1, 8 + index, 0);
+            sample.publishedAt = sample.updatedAt.toInstant(ZoneOffset.UTC);
+            sample.createdAt = LocalDateTime.of(2024, index + 1, 1, 0, 0);
+        }
+        return sample;
+    }
+
+    @MappedSuperclass
+    static class Audited {
+        LocalDateTime createdAt;
+    }
+
+    @Entity(name = "SpecSample")
+    static class Sample extends Audited {
+        @Id
+        Long id;
+        String name;
+        Integer quantity;
+        Long fileSize;
+        Double price;
+        Boolean active;
+        BigDecimal amount;
+        LocalDate releaseDate;
+        LocalTime openTime;
+        LocalDateTime updatedAt;
+        Instant publishedAt;
+        @ManyToOne
+        Owner owner;
+    }
+
+    @Entity(name = "SpecOwner")
+    static class Owner {
+        @Id
+        Long id;
+        String name;
+        @ManyToOne
+        Owner parent;
+    }
+}
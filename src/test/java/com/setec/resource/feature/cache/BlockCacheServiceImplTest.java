@@ -0,0 +1,249 @@
+package com.setec.resource.feature.cache;
+
+import com.setec.resource.feature.storage.StorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// block fetches are counted on a fake storage, prefetches run on the calling thread
+class BlockCacheServiceImplTest {
+
+    private static final String OBJECT = "video/a.mp4";
+
+    private static final int BLOCK_SIZE = 1024;
+
+    // two full blocks and a short last one
+    private final byte[] data = new byte[2 * BLOCK_SIZE + 452];
+
+    // offset and length of every ranged get sent to storage
+    private final List<long[]> requests = Collections.synchronizedList(new ArrayList<>());
+
+    private StorageService storageService;
+
+    private BlockCacheProperties blockCacheProperties;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        new Random(42).nextBytes(data);
+
+        storageService = mock(StorageService.class);
+        when(storageService.getFile(eq(OBJECT), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(1);
+            long length = invocation.getArgument(2);
+            requests.add(new long[]{offset, length});
+            return new ByteArrayInputStream(data, (int) offset, (int) length);
+        });
+
+        blockCacheProperties = new BlockCacheProperties();
+        blockCacheProperties.setEnabled(true);
+        blockCacheProperties.setBlockSize(DataSize.ofBytes(BLOCK_SIZE));
+        blockCacheProperties.setReadAhead(2);
+    }
+
+    @Test
+    void fetchesAlignedBlocksAndCutsTheLastOneAtTheObjectEnd() throws Exception {
+        blockCacheProperties.setReadAhead(0);
+        BlockCacheServiceImpl blockCache = blockCache();
+
+        // crosses the first block boundary
+        assertArrayEquals(Arrays.copyOfRange(data, 1000, 1100), read(blockCache, 1000, 100));
+        assertEquals(List.of("0+1024", "1024+1024"), requests());
+
+        // the tail of the object lives in a block shorter than the others
+        assertArrayEquals(Arrays.copyOfRange(data, 2400, data.length), read(blockCache, 2400, data.length - 2400));
+        assertEquals(List.of("0+1024", "1024+1024", "2048+452"), requests());
+
+        // any range inside cached blocks is served without storage
+        assertArrayEquals(Arrays.copyOfRange(data, 0, data.length), read(blockCache, 0, data.length));
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    void readsAheadWhenARangeCrossesIntoTheNextBlock() throws Exception {
+        BlockCacheServiceImpl blockCache = blockCache();
+
+        read(blockCache, 1000, 100);
+
+        // block 2 is the only one left after block 1, the read-ahead stops at the object end
+        assertEquals(List.of("0+1024", "2048+452", "1024+1024"), requests());
+    }
+
+    @Test
+    void concurrentReadersShareOneFetch() throws Exception {
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(storageService.getFile(eq(OBJECT), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(1);
+            long length = invocation.getArgument(2);
+            requests.add(new long[]{offset, length});
+            fetching.countDown();
+            release.await();
+            return new ByteArrayInputStream(data, (int) offset, (int) length);
+        });
+        // readers after the first one count as playback of the same block, keep read-ahead out of the count
+        blockCacheProperties.setReadAhead(0);
+        BlockCacheServiceImpl blockCache = blockCache();
+
+        ExecutorService readers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> reads = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                reads.add(readers.submit(() -> read(blockCache, 100, 200)));
+            }
+            assertTrue(fetching.await(5, TimeUnit.SECONDS));
+            // give the other readers time to find the block in flight
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<byte[]> read : reads) {
+                assertArrayEquals(Arrays.copyOfRange(data, 100, 300), read.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+
+        assertEquals(List.of("0+1024"), requests());
+    }
+
+    @Test
+    void readsAheadOnlyWhenPlaybackContinues() throws Exception {
+        byte[] large = new byte[16 * BLOCK_SIZE];
+        new Random(7).nextBytes(large);
+        when(storageService.getFile(eq(OBJECT), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(1);
+            long length = invocation.getArgument(2);
+            requests.add(new long[]{offset, length});
+            return new ByteArrayInputStream(large, (int) offset, (int) length);
+        });
+        BlockCacheServiceImpl blockCache = blockCache();
+
+        read(blockCache, large.length, 0, BLOCK_SIZE);
+        // a seek far ahead is not playback, nothing is fetched beyond the block asked for
+        read(blockCache, large.length, 5 * BLOCK_SIZE, BLOCK_SIZE);
+        assertEquals(List.of("0+1024", "5120+1024"), requests());
+
+        // continuing from block 5 fetches the next read-ahead blocks as well
+        read(blockCache, large.length, 6 * BLOCK_SIZE, BLOCK_SIZE);
+        assertEquals(List.of("0+1024", "5120+1024", "7168+1024", "8192+1024", "6144+1024"), requests());
+
+        // those are then served from the cache
+        assertArrayEquals(Arrays.copyOfRange(large, 7 * BLOCK_SIZE, 8 * BLOCK_SIZE), read(blockCache, large.length, 7 * BLOCK_SIZE, BLOCK_SIZE));
+        // and reading on from block 7 only adds block 9, block 8 is already there
+        assertEquals(List.of("0+1024", "5120+1024", "7168+1024", "8192+1024", "6144+1024", "9216+1024"), requests());
+    }
+
+    @Test
+    void doesNotCacheAFailedFetch() throws Exception {
+        AtomicBoolean failed = new AtomicBoolean();
+        when(storageService.getFile(eq(OBJECT), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(1);
+            long length = invocation.getArgument(2);
+            requests.add(new long[]{offset, length});
+            if (failed.compareAndSet(false, true)) {
+                throw new IOException("connection reset");
+            }
+            return new ByteArrayInputStream(data, (int) offset, (int) length);
+        });
+        blockCacheProperties.setReadAhead(0);
+        BlockCacheServiceImpl blockCache = blockCache();
+
+        assertThrows(IOException.class, () -> read(blockCache, 0, 100));
+
+        // the next reader fetches again instead of getting the failure
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 100), read(blockCache, 0, 100));
+        assertEquals(List.of("0+1024", "0+1024"), requests());
+    }
+
+    @Test
+    void aSeekHeavyTraceNeedsFewerStorageRequests() throws Exception {
+        byte[] large = new byte[64 * BLOCK_SIZE];
+        new Random(7).nextBytes(large);
+        when(storageService.getFile(eq(OBJECT), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long offset = invocation.getArgument(1);
+            long length = invocation.getArgument(2);
+            requests.add(new long[]{offset, length});
+            return new ByteArrayInputStream(large, (int) offset, (int) length);
+        });
+
+        // a player probing the header and the moov box at the end, then playing in 256 byte reads,
+        // seeking forward, and scrubbing back over what it already played
+        List<long[]> trace = new ArrayList<>();
+        trace.add(new long[]{0, 512});
+        trace.add(new long[]{large.length - 700, 700});
+        addPlayback(trace, 10 * BLOCK_SIZE, 8 * BLOCK_SIZE);
+        addPlayback(trace, 40 * BLOCK_SIZE, 4 * BLOCK_SIZE);
+        addPlayback(trace, 12 * BLOCK_SIZE, 2 * BLOCK_SIZE);
+
+        // without the cache every range of the trace is its own ranged get
+        for (long[] range : trace) {
+            try (InputStream inputStream = storageService.getFile(OBJECT, range[0], range[1])) {
+                assertArrayEquals(Arrays.copyOfRange(large, (int) range[0], (int) (range[0] + range[1])), inputStream.readAllBytes());
+            }
+        }
+        int withoutCache = requests.size();
+        requests.clear();
+
+        BlockCacheServiceImpl blockCache = blockCache();
+        for (long[] range : trace) {
+            assertArrayEquals(Arrays.copyOfRange(large, (int) range[0], (int) (range[0] + range[1])),
+                    read(blockCache, large.length, range[0], range[1]));
+        }
+        int withCache = requests.size();
+
+        assertEquals(trace.size(), withoutCache);
+        // 1 + 1 header and tail blocks, blocks 10-17 plus 2 read ahead, 40-43 plus 2, 12-13 already cached
+        assertEquals(2 + 10 + 6, withCache);
+    }
+
+    private static void addPlayback(List<long[]> trace, long start, long length) {
+        for (long position = start; position < start + length; position += 256) {
+            trace.add(new long[]{position, 256});
+        }
+    }
+
+    private BlockCacheServiceImpl blockCache() {
+        // prefetches run inline, so the request order is deterministic
+        return new BlockCacheServiceImpl(storageService, blockCacheProperties, new TaskExecutorAdapter(Runnable::run));
+    }
+
+    private byte[] read(BlockCacheServiceImpl blockCache, long start, long length) throws IOException {
+        return read(blockCache, data.length, start, length);
+    }
+
+    private static byte[] read(BlockCacheServiceImpl blockCache, long objectSize, long start, long length) throws IOException {
+        try (InputStream inputStream = blockCache.getRange(OBJECT, objectSize, start, length)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private List<String> requests() {
+        synchronized (requests) {
+            return requests.stream().map(request -> request[0] + "+" + request[1]).toList();
+        }
+    }
+}
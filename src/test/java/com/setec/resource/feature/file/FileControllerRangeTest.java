@@ -0,0 +1,124 @@
+package com.setec.resource.feature.file;
+
+import com.setec.resource.base.BaseSpecification;
+import com.setec.resource.domain.File;
+import com.setec.resource.domain.FileStatus;
+import com.setec.resource.feature.cache.BlockCacheService;
+import com.setec.resource.feature.cache.MediaCacheService;
+import com.setec.resource.feature.file.stream.FileRegionHttpMessageConverter;
+import com.setec.resource.feature.image.ImageDerivativeService;
+import com.setec.resource.feature.redirect.MediaRedirectService;
+import com.setec.resource.feature.spool.SpoolService;
+import com.setec.resource.feature.storage.LocalStorageServiceImpl;
+import com.setec.resource.feature.storage.StorageProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.converter.ResourceHttpMessageConverter;
+import org.springframework.http.converter.ResourceRegionHttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// range handling of the view endpoint on the local backend, where bodies are file regions
+class FileControllerRangeTest {
+
+    private static final String FILE_NAME = "a.mp4";
+
+    private final byte[] data = new byte[10_000];
+
+    @TempDir
+    Path directory;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        new Random(42).nextBytes(data);
+
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setType("local");
+        storageProperties.setDirectory(directory.toString());
+        LocalStorageServiceImpl storageService = new LocalStorageServiceImpl(storageProperties);
+        storageService.uploadFile(new ByteArrayInputStream(data), data.length, "video/" + FILE_NAME, "video/mp4");
+
+        File file = new File();
+        file.setId(1L);
+        file.setFileName(FILE_NAME);
+        file.setFolder("video");
+        file.setContentType("video/mp4");
+        file.setFileSize((long) data.length);
+        file.setChecksum("abc");
+        file.setObjectKey("video/" + FILE_NAME);
+        file.setStatus(FileStatus.STORED);
+        file.setUploadedAt(Instant.parse("2024-01-01T00:00:00Z"));
+
+        FileRepository fileRepository = mock(FileRepository.class);
+        when(fileRepository.findByFileName(FILE_NAME)).thenReturn(Optional.of(file));
+
+        @SuppressWarnings("unchecked")
+        FileServiceImpl fileService = new FileServiceImpl(storageService, mock(MediaCacheService.class), mock(BlockCacheService.class),
+                mock(MediaRedirectService.class), mock(ImageDerivativeService.class), mock(SpoolService.class), fileRepository,
+                mock(BaseSpecification.class), mock(EntityManager.class), mock(TransactionTemplate.class),
+                JsonMapper.builder().build(), mock(AsyncTaskExecutor.class), new SimpleMeterRegistry());
+
+        // the converters Spring MVC would pick for these bodies, including the one that re-ranges resources
+        mockMvc = MockMvcBuilders.standaloneSetup(new FileController(fileService, fileRepository))
+                .setMessageConverters(new FileRegionHttpMessageConverter(), new ResourceHttpMessageConverter(),
+                        new ResourceRegionHttpMessageConverter())
+                .build();
+    }
+
+    @Test
+    void servesARange() throws Exception {
+        mockMvc.perform(get("/api/v1/files/view/" + FILE_NAME).header("Range", "bytes=10-19"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 10-19/" + data.length))
+                .andExpect(content().bytes(Arrays.copyOfRange(data, 10, 20)));
+    }
+
+    @Test
+    void sendsTheWholeFileWhenIfRangeDoesNotMatch() throws Exception {
+        mockMvc.perform(get("/api/v1/files/view/" + FILE_NAME).header("Range", "bytes=10-19").header("If-Range", "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Range"))
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    void ignoresOtherRangeUnits() throws Exception {
+        mockMvc.perform(get("/api/v1/files/view/" + FILE_NAME).header("Range", "items=0-9"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    void ignoresMoreRangesThanTheLimit() throws Exception {
+        // 17 ranges that do not coalesce
+        String ranges = IntStream.range(0, 17).mapToObj(i -> (i * 2) + "-" + (i * 2)).collect(Collectors.joining(","));
+
+        mockMvc.perform(get("/api/v1/files/view/" + FILE_NAME).header("Range", "bytes=" + ranges))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data));
+    }
+}
@@ -0,0 +1,187 @@
+package com.setec.resource.feature.file.stream;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class HttpRangesTest {
+
+    private static final int ITERATIONS = 20_000;
+
+    @Test
+    void parsesTheRangeForms() {
+        assertEquals(List.of(new ByteRange(0, 499)), HttpRanges.parse("bytes=0-499", 10_000));
+        assertEquals(List.of(new ByteRange(9_500, 9_999)), HttpRanges.parse("bytes=-500", 10_000));
+        assertEquals(List.of(new ByteRange(9_500, 9_999)), HttpRanges.parse("bytes=9500-", 10_000));
+        assertEquals(List.of(new ByteRange(0, 9_999)), HttpRanges.parse("bytes=-20000", 10_000));
+        assertEquals(List.of(new ByteRange(100, 9_999)), HttpRanges.parse("bytes=100-99999999999999999999999", 10_000));
+        assertEquals(List.of(new ByteRange(0, 0), new ByteRange(9_999, 9_999)), HttpRanges.parse("bytes=0-0, -1", 10_000));
+        assertEquals(List.of(new ByteRange(0, 9)), HttpRanges.parse("BYTES = 0-9", 10_000));
+    }
+
+    @Test
+    void coalescesOverlappingAndAdjacentRanges() {
+        assertEquals(List.of(new ByteRange(0, 299)), HttpRanges.parse("bytes=200-299,0-99,100-199", 10_000));
+        assertEquals(List.of(new ByteRange(0, 150), new ByteRange(500, 599)), HttpRanges.parse("bytes=0-100,50-150,500-599", 10_000));
+    }
+
+    @Test
+    void ignoresInvalidHeaders() {
+        for (String header : List.of("bytes=", "bytes=abc", "bytes=5-1", "bytes=1-2-3", "items=0-10", "bytes 0-10", "bytes=-", "bytes=0-1,x")) {
+            assertEquals(List.of(), HttpRanges.parse(header, 10_000), header);
+        }
+        assertEquals(List.of(), HttpRanges.parse(null, 10_000));
+    }
+
+    @Test
+    void rejectsUnsatisfiableRanges() {
+        RangeNotSatisfiableException e = assertThrows(RangeNotSatisfiableException.class, () -> HttpRanges.parse("bytes=10000-", 10_000));
+        assertEquals("bytes */10000", e.getHeaders().getFirst("Content-Range"));
+        assertThrows(RangeNotSatisfiableException.class, () -> HttpRanges.parse("bytes=-0", 10_000));
+        assertThrows(RangeNotSatisfiableException.class, () -> HttpRanges.parse("bytes=0-0", 0));
+    }
+
+    @Test
+    void ignoresTooManyRanges() {
+        StringBuilder header = new StringBuilder("bytes=");
+        for (int i = 0; i <= HttpRanges.MAX_RANGES; i++) {
+            header.append(i == 0 ? "" : ",").append(i * 10).append('-').append(i * 10 + 1);
+        }
+        assertEquals(List.of(), HttpRanges.parse(header.toString(), 10_000));
+    }
+
+    // every valid header selects exactly the bytes a naive per-byte model selects
+    @Test
+    void matchesReferenceModel() {
+        Random random = new Random(7233);
+        for (int i = 0; i < ITERATIONS; i++) {
+            int length = random.nextInt(64);
+            int specs = 1 + random.nextInt(5);
+
+            StringBuilder header = new StringBuilder("bytes=");
+            BitSet expected = new BitSet();
+            for (int s = 0; s < specs; s++) {
+                if (s > 0) {
+                    header.append(random.nextBoolean() ? "," : " , ");
+                }
+                int first = random.nextInt(80);
+                int last = first + random.nextInt(80);
+                switch (random.nextInt(3)) {
+                    case 0 -> {
+                        header.append(first).append('-').append(last);
+                        expected.set(Math.min(first, length), Math.min(last + 1, length));
+                    }
+                    case 1 -> {
+                        header.append(first).append('-');
+                        expected.set(Math.min(first, length), length);
+                    }
+                    default -> {
+                        header.append('-').append(first);
+                        expected.set(Math.max(0, length - first), length);
+                    }
+                }
+            }
+
+            String seed = "header=" + header + " length=" + length;
+            List<ByteRange> ranges;
+            try {
+                ranges = HttpRanges.parse(header.toString(), length);
+            } catch (RangeNotSatisfiableException e) {
+                assertTrue(expected.isEmpty(), seed);
+                continue;
+            }
+
+            assertTrue(!expected.isEmpty(), seed);
+            assertWellFormed(ranges, length, seed);
+
+            BitSet actual = new BitSet();
+            ranges.forEach(range -> actual.set((int) range.start(), (int) range.end() + 1));
+            assertEquals(expected, actual, seed);
+        }
+    }
+
+    // arbitrary input never escapes with anything but a 416, and never yields out of bounds ranges
+    @Test
+    void survivesGarbage() {
+        Random random = new Random(9110);
+        String alphabet = "bytes=-,0123456789 \t;=xX-";
+        for (int i = 0; i < ITERATIONS; i++) {
+            StringBuilder header = new StringBuilder(random.nextBoolean() ? "bytes=" : "");
+            int size = random.nextInt(24);
+            for (int c = 0; c < size; c++) {
+                header.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            long length = random.nextInt(3) == 0 ? 0 : random.nextLong(1, Long.MAX_VALUE);
+            try {
+                assertWellFormed(HttpRanges.parse(header.toString(), length), length, header.toString());
+            } catch (RangeNotSatisfiableException e) {
+                // allowed
+            } catch (RuntimeException e) {
+                fail("header=" + header + " length=" + length, e);
+            }
+        }
+    }
+
+    @Test
+    void multipartBodyContainsEachRange() throws IOException {
+        byte[] content = new byte[1000];
+        new Random(1).nextBytes(content);
+
+        List<ByteRange> ranges = HttpRanges.parse("bytes=0-9,500-599,-5", content.length);
+        List<long[]> opened = new ArrayList<>();
+        MultipartByteRangesResource resource = new MultipartByteRangesResource(ranges, content.length, "video/mp4",
+                (start, length) -> {
+                    opened.add(new long[]{start, length});
+                    return new ByteArrayInputStream(content, (int) start, (int) length);
+                });
+
+        byte[] body;
+        try (InputStream inputStream = resource.getInputStream()) {
+            body = inputStream.readAllBytes();
+        }
+
+        assertEquals(resource.contentLength(), body.length);
+        assertEquals(3, opened.size());
+
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        String delimiter = "--" + resource.getBoundary();
+        assertTrue(text.endsWith("\r\n" + delimiter + "--\r\n"));
+
+        int offset = 0;
+        for (ByteRange range : ranges) {
+            String header = delimiter + "\r\nContent-Type: video/mp4\r\nContent-Range: bytes "
+                    + range.start() + "-" + range.end() + "/1000\r\n\r\n";
+            offset = text.indexOf(header, offset) + header.length();
+            byte[] part = new byte[(int) range.length()];
+            System.arraycopy(body, offset, part, 0, part.length);
+            byte[] slice = new byte[(int) range.length()];
+            System.arraycopy(content, (int) range.start(), slice, 0, slice.length);
+            assertArrayEquals(slice, part);
+        }
+    }
+
+    private static void assertWellFormed(List<ByteRange> ranges, long length, String seed) {
+        assertTrue(ranges.size() <= HttpRanges.MAX_RANGES, seed);
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            assertTrue(range.start() >= 0 && range.start() <= range.end() && range.end() < length, seed);
+            if (i > 0) {
+                // sorted with at least one byte gap, otherwise they would have been merged
+                assertTrue(ranges.get(i - 1).end() + 1 < range.start(), seed);
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.setec.resource.feature.minio;
+
+import com.setec.resource.config.MinioConfig;
+import com.setec.resource.feature.storage.StorageService;
+import com.setec.resource.feature.storage.StorageServiceContractTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+
+// the MinIO client against the in-process stub, so the suite runs without a MinIO server
+class MinioServiceImplTest extends StorageServiceContractTest {
+
+    private static S3Stub s3;
+
+    @BeforeAll
+    static void startStub() throws IOException {
+        s3 = new S3Stub(0, 0);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        s3.close();
+    }
+
+    @Override
+    protected StorageService createStorage() {
+        MinioProperties minioProperties = new MinioProperties();
+        minioProperties.setUrl(s3.getUrl());
+        minioProperties.setAccessKey("contract");
+        minioProperties.setSecretKey("contract-secret");
+        minioProperties.setBucketName("contract");
+        minioProperties.getUpload().setPartSize(DataSize.ofBytes(PART_SIZE));
+
+        MinioConfig minioConfig = new MinioConfig(minioProperties);
+        return new MinioServiceImpl(minioConfig.minioClient(), minioConfig.multipartMinioClient(),
+                minioProperties, new MinioCallLimiter(minioProperties), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,184 @@
+package com.setec.resource.feature.minio;
+
+import com.setec.resource.config.MinioConfig;
+import com.setec.resource.feature.storage.StorageService;
+import com.setec.resource.feature.storage.StorageServiceContractTest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the contract on two stubbed endpoints, then replication, hedging and failover on their own stubs
+class ReplicatedMinioServiceImplTest extends StorageServiceContractTest {
+
+    private static S3Stub primary;
+
+    private static S3Stub replica;
+
+    @BeforeAll
+    static void startStubs() throws IOException {
+        primary = new S3Stub(0, 0);
+        replica = new S3Stub(0, 0);
+    }
+
+    @AfterAll
+    static void stopStubs() {
+        primary.close();
+        replica.close();
+    }
+
+    @Override
+    protected StorageService createStorage() {
+        return replicated(properties(primary, replica), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void writesReachEveryEndpoint() throws Exception {
+        byte[] data = bytes(10_000);
+
+        storage.uploadFile(new ByteArrayInputStream(data), data.length, objectName("image/replicated.jpg"), "image/jpeg");
+
+        for (S3Stub stub : List.of(primary, replica)) {
+            assertArrayEquals(data, read(single(stub).getFile(objectName("image/replicated.jpg"))));
+        }
+    }
+
+    @Test
+    void copiesChunkedUploadsToEveryEndpoint() throws Exception {
+        byte[] data = bytes(1_000);
+        String uploadId = storage.createMultipartUpload(objectName("video/chunked.mp4"), "video/mp4");
+        storage.uploadPart(objectName("video/chunked.mp4"), uploadId, 1, data, data.length);
+
+        storage.completeMultipartUpload(objectName("video/chunked.mp4"), uploadId, storage.listParts(objectName("video/chunked.mp4"), uploadId));
+
+        assertArrayEquals(data, read(single(replica).getFile(objectName("video/chunked.mp4"))));
+    }
+
+    @Test
+    void hedgesAroundASlowPrimary() throws Exception {
+        try (S3Stub slow = new S3Stub(300, 0); S3Stub fast = new S3Stub(0, 0)) {
+            MeterRegistry meterRegistry = new SimpleMeterRegistry();
+            MinioProperties minioProperties = properties(slow, fast);
+            minioProperties.getHedge().setMaxDelay(Duration.ofMillis(50));
+            ReplicatedMinioServiceImpl replicated = replicated(minioProperties, meterRegistry);
+
+            byte[] data = bytes(1_000);
+            replicated.uploadFile(new ByteArrayInputStream(data), data.length, "image/a.jpg", "image/jpeg");
+
+            long started = System.nanoTime();
+            assertArrayEquals(data, read(replicated.getFile("image/a.jpg")));
+            long elapsed = Duration.ofNanos(System.nanoTime() - started).toMillis();
+
+            assertTrue(elapsed < 300, "answered after " + elapsed + " ms");
+            assertEquals(1, meterRegistry.get("minio.hedge.sent").functionCounter().count());
+            assertEquals(1, meterRegistry.get("minio.hedge.wins").functionCounter().count());
+        }
+    }
+
+    @Test
+    void readsFromTheHedgeWhenThePrimaryFailsAtTheHedgeDelay() throws Exception {
+        // the primary answers its error just as the backup request is being started
+        try (S3Stub failing = new S3Stub(50, 0); S3Stub up = new S3Stub(0, 0)) {
+            MinioProperties minioProperties = properties(failing, up);
+            minioProperties.getHedge().setMinDelay(Duration.ofMillis(50));
+            minioProperties.getHedge().setMaxDelay(Duration.ofMillis(50));
+            ReplicatedMinioServiceImpl replicated = replicated(minioProperties, new SimpleMeterRegistry());
+
+            // only the replica has the object, so the primary fails with NoSuchKey
+            byte[] data = bytes(1_000);
+            single(up).uploadFile(new ByteArrayInputStream(data), data.length, "image/a.jpg", "image/jpeg");
+
+            for (int i = 0; i < 40; i++) {
+                assertArrayEquals(data, read(replicated.getFile("image/a.jpg")), "read " + i);
+            }
+        }
+    }
+
+    @Test
+    void readsFailOverWhenThePrimaryIsDown() throws Exception {
+        S3Stub down = new S3Stub(0, 0);
+        try (S3Stub up = new S3Stub(0, 0)) {
+            ReplicatedMinioServiceImpl replicated = replicated(properties(down, up), new SimpleMeterRegistry());
+
+            byte[] data = bytes(1_000);
+            replicated.uploadFile(new ByteArrayInputStream(data), data.length, "image/a.jpg", "image/jpeg");
+            down.close();
+
+            assertArrayEquals(data, read(replicated.getFile("image/a.jpg")));
+            assertEquals(data.length, replicated.getObjectSize("image/a.jpg"));
+        }
+    }
+
+    @Test
+    void writesFailWithoutAQuorum() throws Exception {
+        S3Stub down = new S3Stub(0, 0);
+        down.close();
+        try (S3Stub up = new S3Stub(0, 0)) {
+            ReplicatedMinioServiceImpl quorum = replicated(properties(up, down), new SimpleMeterRegistry());
+            assertThrows(Exception.class, () -> quorum.uploadFile(new ByteArrayInputStream(bytes(10)), 10, "image/a.jpg", "image/jpeg"));
+
+            // the primary alone is enough in async mode
+            MinioProperties minioProperties = properties(up, down);
+            minioProperties.getReplication().setMode(MinioProperties.ReplicationMode.ASYNC);
+            ReplicatedMinioServiceImpl async = replicated(minioProperties, new SimpleMeterRegistry());
+            async.uploadFile(new ByteArrayInputStream(bytes(10)), 10, "image/b.jpg", "image/jpeg");
+            assertEquals(10, single(up).getObjectSize("image/b.jpg"));
+        }
+    }
+
+    @Test
+    void writesFailWhenThePrimaryIsDown() throws Exception {
+        S3Stub down = new S3Stub(0, 0);
+        down.close();
+        try (S3Stub first = new S3Stub(0, 0); S3Stub second = new S3Stub(0, 0)) {
+            // two endpoints store the write, but presigned urls would point at the primary without it
+            MinioProperties minioProperties = properties(down, first, second);
+            minioProperties.getReplication().setWriteQuorum(2);
+            ReplicatedMinioServiceImpl quorum = replicated(minioProperties, new SimpleMeterRegistry());
+            assertThrows(Exception.class, () -> quorum.uploadFile(new ByteArrayInputStream(bytes(10)), 10, "image/a.jpg", "image/jpeg"));
+        }
+    }
+
+    private static MinioProperties properties(S3Stub primary, S3Stub... replicas) {
+        MinioProperties minioProperties = new MinioProperties();
+        minioProperties.setUrl(primary.getUrl());
+        minioProperties.setAccessKey("contract");
+        minioProperties.setSecretKey("contract-secret");
+        minioProperties.setBucketName("contract");
+        minioProperties.getUpload().setPartSize(DataSize.ofBytes(PART_SIZE));
+        for (S3Stub stub : replicas) {
+            MinioProperties.Endpoint endpoint = new MinioProperties.Endpoint();
+            endpoint.setUrl(stub.getUrl());
+            minioProperties.getReplication().getEndpoints().add(endpoint);
+        }
+        minioProperties.getReplication().setWriteQuorum(replicas.length + 1);
+        return minioProperties;
+    }
+
+    private static ReplicatedMinioServiceImpl replicated(MinioProperties minioProperties, MeterRegistry meterRegistry) {
+        SimpleAsyncTaskExecutor replicaExecutor = new SimpleAsyncTaskExecutor("replica-");
+        replicaExecutor.setVirtualThreads(true);
+        ReplicatedMinioServiceImpl replicated = new ReplicatedMinioServiceImpl(minioProperties, meterRegistry, replicaExecutor);
+        replicated.bindTo(meterRegistry);
+        return replicated;
+    }
+
+    private static MinioServiceImpl single(S3Stub stub) {
+        MinioProperties minioProperties = properties(stub);
+        return new MinioServiceImpl(MinioConfig.newMinioClient(minioProperties), MinioConfig.newMultipartMinioClient(minioProperties),
+                minioProperties, new MinioCallLimiter(minioProperties), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,344 @@
+package com.setec.resource.feature.minio;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the S3 calls {@code MinioClient} makes: single and multipart puts,
+ * part listing, ranged gets, stat, deletes and listing. Objects live on the heap. Every request waits
+ * {@code latencyMillis} before it is answered and bodies are moved at {@code bytesPerSecond}
+ * per connection, which is what a remote MinIO costs the application.
+ *
+ * @author Pov soknem
+ * @since 1.0 (2024)
+ */
+public class S3Stub implements AutoCloseable {
+
+    private static final String XMLNS = "http://s3.amazonaws.com/doc/2006-03-01/";
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    // S3 sends millisecond precision, the client rejects anything longer
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private static final Pattern KEY = Pattern.compile("<Key>(.*?)</Key>");
+
+    // bandwidth is enforced per chunk, small enough to keep the rate smooth
+    private static final int CHUNK = 64 * 1024;
+
+    private final HttpServer server;
+
+    private final long latencyMillis;
+
+    private final long bytesPerSecond;
+
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+
+    private final Map<String, ConcurrentSkipListMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    public S3Stub(long latencyMillis, long bytesPerSecond) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // platform threads: the JDK server writes bodies inside a monitor, a virtual handler blocked there stays
+        // pinned and on a single core starves the virtual thread that should read the body
+        this.server.setExecutor(Executors.newCachedThreadPool(Thread.ofPlatform().daemon().factory()));
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        requests.incrementAndGet();
+        try (exchange) {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+
+            // path style: /{bucket} or /{bucket}/{key}
+            String path = exchange.getRequestURI().getRawPath();
+            int slash = path.indexOf('/', 1);
+            String bucket = URLDecoder.decode(slash < 0 ? path.substring(1) : path.substring(1, slash), StandardCharsets.UTF_8);
+            String key = slash < 0 ? "" : URLDecoder.decode(path.substring(slash + 1), StandardCharsets.UTF_8);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (key.isEmpty()) {
+                handleBucket(exchange, method, bucket, query);
+            } else if (query.containsKey("uploads")) {
+                createUpload(exchange, bucket, key);
+            } else if (query.containsKey("uploadId")) {
+                handleUpload(exchange, method, bucket, key, query);
+            } else {
+                switch (method) {
+                    case "PUT" -> putObject(exchange, key);
+                    case "GET" -> getObject(exchange, key, true);
+                    case "HEAD" -> getObject(exchange, key, false);
+                    case "DELETE" -> {
+                        objects.remove(key);
+                        exchange.sendResponseHeaders(204, -1);
+                    }
+                    default -> exchange.sendResponseHeaders(405, -1);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleBucket(HttpExchange exchange, String method, String bucket, Map<String, String> query) throws IOException {
+
+        if (query.containsKey("location")) {
+            sendXml(exchange, 200, "<LocationConstraint xmlns=\"" + XMLNS + "\">us-east-1</LocationConstraint>");
+        } else if (method.equals("POST") && query.containsKey("delete")) {
+            String body = new String(readBody(exchange), StandardCharsets.UTF_8);
+            Matcher matcher = KEY.matcher(body);
+            while (matcher.find()) {
+                objects.remove(matcher.group(1));
+            }
+            sendXml(exchange, 200, "<DeleteResult xmlns=\"" + XMLNS + "\"></DeleteResult>");
+        } else if (method.equals("GET")) {
+            String prefix = query.getOrDefault("prefix", "");
+            StringBuilder contents = new StringBuilder();
+            int count = 0;
+            for (Map.Entry<String, StoredObject> entry : objects.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    StoredObject object = entry.getValue();
+                    contents.append("<Contents><Key>").append(entry.getKey()).append("</Key>")
+                            .append("<LastModified>").append(TIMESTAMP.format(object.lastModified())).append("</LastModified>")
+                            .append("<ETag>\"").append(object.etag()).append("\"</ETag>")
+                            .append("<Size>").append(object.data().length).append("</Size>")
+                            .append("<StorageClass>STANDARD</StorageClass></Contents>");
+                    count++;
+                }
+            }
+            sendXml(exchange, 200, "<ListBucketResult xmlns=\"" + XMLNS + "\"><Name>" + bucket + "</Name><Prefix>" + prefix
+                    + "</Prefix><KeyCount>" + count + "</KeyCount><MaxKeys>1000</MaxKeys><IsTruncated>false</IsTruncated>"
+                    + contents + "</ListBucketResult>");
+        } else {
+            // HEAD bucket and anything else on the bucket itself
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+
+    private void createUpload(HttpExchange exchange, String bucket, String key) throws IOException {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new ConcurrentSkipListMap<>());
+        sendXml(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"" + XMLNS + "\"><Bucket>" + bucket + "</Bucket><Key>" + key
+                + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+    }
+
+    private void handleUpload(HttpExchange exchange, String method, String bucket, String key, Map<String, String> query) throws IOException {
+
+        String uploadId = query.get("uploadId");
+        ConcurrentSkipListMap<Integer, byte[]> parts = uploads.get(uploadId);
+        if (parts == null) {
+            sendError(exchange, 404, "NoSuchUpload", key);
+            return;
+        }
+
+        switch (method) {
+            case "GET" -> {
+                StringBuilder listed = new StringBuilder();
+                for (Map.Entry<Integer, byte[]> part : parts.entrySet()) {
+                    listed.append("<Part><PartNumber>").append(part.getKey()).append("</PartNumber>")
+                            .append("<LastModified>").append(TIMESTAMP.format(Instant.now())).append("</LastModified>")
+                            .append("<ETag>\"").append(md5(part.getValue())).append("\"</ETag>")
+                            .append("<Size>").append(part.getValue().length).append("</Size></Part>");
+                }
+                String owner = "<ID>stub</ID><DisplayName>stub</DisplayName>";
+                sendXml(exchange, 200, "<ListPartsResult xmlns=\"" + XMLNS + "\"><Bucket>" + bucket + "</Bucket><Key>" + key
+                        + "</Key><UploadId>" + uploadId + "</UploadId><Initiator>" + owner + "</Initiator><Owner>" + owner
+                        + "</Owner><StorageClass>STANDARD</StorageClass><PartNumberMarker>0</PartNumberMarker><NextPartNumberMarker>"
+                        + (parts.isEmpty() ? 0 : parts.lastKey()) + "</NextPartNumberMarker><MaxParts>1000</MaxParts>"
+                        + "<IsTruncated>false</IsTruncated>" + listed + "</ListPartsResult>");
+            }
+            case "PUT" -> {
+                byte[] data = readBody(exchange);
+                parts.put(Integer.parseInt(query.get("partNumber")), data);
+                exchange.getResponseHeaders().set("ETag", "\"" + md5(data) + "\"");
+                exchange.sendResponseHeaders(200, -1);
+            }
+            case "POST" -> {
+                readBody(exchange);
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                for (byte[] part : parts.values()) {
+                    content.writeBytes(part);
+                }
+                uploads.remove(uploadId);
+                StoredObject object = store(key, content.toByteArray(), null);
+                sendXml(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"" + XMLNS + "\"><Key>" + key + "</Key><ETag>\""
+                        + object.etag() + "\"</ETag></CompleteMultipartUploadResult>");
+            }
+            case "DELETE" -> {
+                uploads.remove(uploadId);
+                exchange.sendResponseHeaders(204, -1);
+            }
+            default -> exchange.sendResponseHeaders(405, -1);
+        }
+    }
+
+    private void putObject(HttpExchange exchange, String key) throws IOException {
+        byte[] data = readBody(exchange);
+        StoredObject object = store(key, data, exchange.getRequestHeaders().getFirst("Content-Type"));
+        exchange.getResponseHeaders().set("ETag", "\"" + object.etag() + "\"");
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void getObject(HttpExchange exchange, String key, boolean withBody) throws IOException, InterruptedException {
+
+        StoredObject object = objects.get(key);
+        if (object == null) {
+            if (withBody) {
+                sendError(exchange, 404, "NoSuchKey", key);
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+            return;
+        }
+
+        byte[] data = object.data();
+        int start = 0;
+        int end = data.length - 1;
+        int status = 200;
+
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null) {
+            Matcher matcher = RANGE.matcher(range);
+            if (matcher.matches()) {
+                start = Integer.parseInt(matcher.group(1));
+                if (!matcher.group(2).isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(matcher.group(2)));
+                }
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + data.length);
+            }
+        }
+
+        exchange.getResponseHeaders().set("ETag", "\"" + object.etag() + "\"");
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified().atOffset(ZoneOffset.UTC)));
+        exchange.getResponseHeaders().set("Content-Type", object.contentType());
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+        int length = end - start + 1;
+        if (!withBody) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        exchange.sendResponseHeaders(status, length);
+        OutputStream body = exchange.getResponseBody();
+        for (int position = start; position <= end; position += CHUNK) {
+            int count = Math.min(CHUNK, end + 1 - position);
+            body.write(data, position, count);
+            throttle(count);
+        }
+    }
+
+    private StoredObject store(String key, byte[] data, String contentType) {
+        StoredObject object = new StoredObject(data, contentType != null ? contentType : "application/octet-stream",
+                md5(data), Instant.now());
+        objects.put(key, object);
+        return object;
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        byte[] buffer = new byte[CHUNK];
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                content.write(buffer, 0, read);
+                throttle(read);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        return content.toByteArray();
+    }
+
+    private void throttle(int bytes) throws InterruptedException {
+        if (bytesPerSecond > 0) {
+            long nanos = bytes * 1_000_000_000L / bytesPerSecond;
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String resource) throws IOException {
+        sendXml(exchange, status, "<Error><Code>" + code + "</Code><Message>" + code + "</Message><Resource>/" + resource
+                + "</Resource><RequestId>stub</RequestId><HostId>stub</HostId></Error>");
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    private static String md5(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record StoredObject(byte[] data, String contentType, String etag, Instant lastModified) {
+    }
+}
@@ -0,0 +1,66 @@
+package com.setec.resource.feature.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LocalStorageServiceImplTest extends StorageServiceContractTest {
+
+    @TempDir
+    Path directory;
+
+    @Override
+    protected StorageService createStorage() throws IOException {
+        StorageProperties storageProperties = new StorageProperties();
+        storageProperties.setType("local");
+        storageProperties.setDirectory(directory.toString());
+        return new LocalStorageServiceImpl(storageProperties);
+    }
+
+    @Test
+    void servesObjectsFromTheirFile() throws Exception {
+        byte[] data = bytes(1_000);
+        storage.uploadFile(new ByteArrayInputStream(data), data.length, "image/a.jpg", "image/jpeg");
+
+        assertArrayEquals(data, Files.readAllBytes(storage.getLocalPath("image/a.jpg")));
+    }
+
+    @Test
+    void leavesNothingBehindWhenAnUploadFails() throws Exception {
+        // the stream is shorter than announced, the object must not appear half written
+        assertThrows(IOException.class, () -> storage.uploadFile(new ByteArrayInputStream(bytes(10)), 20, "image/a.jpg", "image/jpeg"));
+
+        assertEquals(-1, storage.getObjectSize("image/a.jpg"));
+        try (Stream<Path> paths = Files.walk(directory)) {
+            assertEquals(0, paths.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    void rejectsNamesOutsideTheDirectory() {
+        for (String objectName : new String[]{"../a.jpg", "image/../../a.jpg", ".tmp/a", ".uploads/a/00001.x"}) {
+            assertThrows(IllegalArgumentException.class, () -> storage.getObjectSize(objectName), objectName);
+        }
+        assertThrows(IllegalArgumentException.class, () -> storage.listParts("video/a.mp4", "../.tmp"));
+    }
+
+    @Test
+    void dropsHalfWrittenFilesOnStartup() throws Exception {
+        Files.writeString(directory.resolve(".tmp").resolve("left-over"), "partial");
+
+        createStorage();
+
+        try (Stream<Path> paths = Files.list(directory.resolve(".tmp"))) {
+            assertEquals(0, paths.count());
+        }
+    }
+}
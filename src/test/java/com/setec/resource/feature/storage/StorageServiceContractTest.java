@@ -0,0 +1,186 @@
+package com.setec.resource.feature.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behaviour every {@link StorageService} backend must share, the services above it only rely on this.
+ * Each backend runs the suite by extending it.
+ */
+public abstract class StorageServiceContractTest {
+
+    protected static final int PART_SIZE = 5 * 1024 * 1024;
+
+    private final Random random = new Random(42);
+
+    protected StorageService storage;
+
+    // backends may share one stub or directory across the suite, every test writes below its own prefix
+    private String prefix;
+
+    protected abstract StorageService createStorage() throws Exception;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = createStorage();
+        prefix = "contract-" + UUID.randomUUID() + "/";
+    }
+
+    @Test
+    void storesAndReadsBackAnObject() throws Exception {
+        byte[] data = bytes(100_000);
+
+        storage.uploadFile(new ByteArrayInputStream(data), data.length, objectName("image/a.jpg"), "image/jpeg");
+
+        assertArrayEquals(data, read(storage.getFile(objectName("image/a.jpg"))));
+        assertEquals(data.length, storage.getObjectSize(objectName("image/a.jpg")));
+    }
+
+    @Test
+    void readsRanges() throws Exception {
+        byte[] data = bytes(100_000);
+        storage.uploadFile(new ByteArrayInputStream(data), data.length, objectName("video/a.mp4"), "video/mp4");
+
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 1), read(storage.getFile(objectName("video/a.mp4"), 0, 1)));
+        assertArrayEquals(Arrays.copyOfRange(data, 4_096, 70_000), read(storage.getFile(objectName("video/a.mp4"), 4_096, 65_904)));
+        // a range past the end is cut at the end of the object
+        assertArrayEquals(Arrays.copyOfRange(data, 99_000, 100_000), read(storage.getFile(objectName("video/a.mp4"), 99_000, 5_000)));
+    }
+
+    @Test
+    void replacesAnObjectWrittenTwice() throws Exception {
+        byte[] first = bytes(10_000);
+        byte[] second = bytes(500);
+
+        storage.uploadFile(new ByteArrayInputStream(first), first.length, objectName("image/a.png"), "image/png");
+        storage.uploadFile(new ByteArrayInputStream(second), second.length, objectName("image/a.png"), "image/png");
+
+        assertArrayEquals(second, read(storage.getFile(objectName("image/a.png"))));
+    }
+
+    @Test
+    void uploadsStreamsOfUnknownLength() throws Exception {
+        byte[] small = bytes(1_000);
+        byte[] large = bytes(2 * PART_SIZE + 12_345);
+
+        assertEquals(small.length, storage.uploadStream(new ByteArrayInputStream(small), objectName("file/small.bin"), "application/octet-stream"));
+        assertEquals(large.length, storage.uploadStream(new ByteArrayInputStream(large), objectName("file/large.bin"), "application/octet-stream"));
+
+        assertArrayEquals(small, read(storage.getFile(objectName("file/small.bin"))));
+        assertArrayEquals(large, read(storage.getFile(objectName("file/large.bin"))));
+    }
+
+    @Test
+    void reportsMissingObjects() {
+        assertThrows(Exception.class, () -> read(storage.getFile(objectName("image/missing.jpg"))));
+        assertThrows(Exception.class, () -> read(storage.getFile(objectName("image/missing.jpg"), 0, 10)));
+    }
+
+    @Test
+    void sizeOfAMissingObjectIsNegative() throws Exception {
+        assertEquals(-1, storage.getObjectSize(objectName("image/missing.jpg")));
+    }
+
+    @Test
+    void deletesObjects() throws Exception {
+        for (String objectName : List.of(objectName("image/a.jpg"), objectName("image/b.jpg"), objectName("image/c.jpg"))) {
+            storage.uploadFile(new ByteArrayInputStream(bytes(10)), 10, objectName, "image/jpeg");
+        }
+
+        storage.deleteFile(objectName("image/a.jpg"));
+        // deleting what is already gone is not an error
+        storage.deleteFile(objectName("image/a.jpg"));
+
+        assertEquals(Set.of(), storage.deleteFiles(List.of(objectName("image/b.jpg"), objectName("image/c.jpg"), objectName("image/missing.jpg"))).keySet());
+
+        for (String objectName : List.of(objectName("image/a.jpg"), objectName("image/b.jpg"), objectName("image/c.jpg"))) {
+            assertEquals(-1, storage.getObjectSize(objectName), objectName);
+        }
+    }
+
+    @Test
+    void listsObjectsBelowAPrefix() throws Exception {
+        for (String objectName : List.of(objectName("derived/image/a.jpg/w200.jpg"), objectName("derived/image/a.jpg/w400-q80.jpg"),
+                objectName("derived/image/ab.jpg/w200.jpg"), objectName("image/a.jpg"))) {
+            storage.uploadFile(new ByteArrayInputStream(bytes(10)), 10, objectName, "image/jpeg");
+        }
+
+        assertEquals(Set.of(objectName("derived/image/a.jpg/w200.jpg"), objectName("derived/image/a.jpg/w400-q80.jpg")),
+                new HashSet<>(storage.listFiles(objectName("derived/image/a.jpg/"))));
+        assertEquals(Set.of(objectName("derived/image/a.jpg/w200.jpg"), objectName("derived/image/a.jpg/w400-q80.jpg"), objectName("derived/image/ab.jpg/w200.jpg")),
+                new HashSet<>(storage.listFiles(objectName("derived/image/a"))));
+        assertEquals(List.of(), storage.listFiles(objectName("derived/video/")));
+    }
+
+    @Test
+    void assemblesMultipartUploads() throws Exception {
+        byte[] data = bytes(2 * PART_SIZE + 1_000);
+        String uploadId = storage.createMultipartUpload(objectName("video/a.mp4"), "video/mp4");
+
+        // out of order, and the first part sent twice, the second copy wins
+        storage.uploadPart(objectName("video/a.mp4"), uploadId, 3, Arrays.copyOfRange(data, 2 * PART_SIZE, data.length), 1_000);
+        storage.uploadPart(objectName("video/a.mp4"), uploadId, 1, bytes(PART_SIZE), PART_SIZE);
+        storage.uploadPart(objectName("video/a.mp4"), uploadId, 2, Arrays.copyOfRange(data, PART_SIZE, 2 * PART_SIZE), PART_SIZE);
+        storage.uploadPart(objectName("video/a.mp4"), uploadId, 1, Arrays.copyOf(data, PART_SIZE), PART_SIZE);
+
+        List<StoragePart> parts = storage.listParts(objectName("video/a.mp4"), uploadId);
+        assertEquals(List.of(1, 2, 3), parts.stream().map(StoragePart::partNumber).toList());
+        assertEquals(List.of((long) PART_SIZE, (long) PART_SIZE, 1_000L), parts.stream().map(StoragePart::partSize).toList());
+
+        storage.completeMultipartUpload(objectName("video/a.mp4"), uploadId, parts);
+
+        assertArrayEquals(data, read(storage.getFile(objectName("video/a.mp4"))));
+        assertThrows(Exception.class, () -> storage.listParts(objectName("video/a.mp4"), uploadId));
+    }
+
+    @Test
+    void abortsMultipartUploads() throws Exception {
+        String uploadId = storage.createMultipartUpload(objectName("video/a.mp4"), "video/mp4");
+        storage.uploadPart(objectName("video/a.mp4"), uploadId, 1, bytes(1_000), 1_000);
+
+        storage.abortMultipartUpload(objectName("video/a.mp4"), uploadId);
+
+        assertThrows(Exception.class, () -> storage.listParts(objectName("video/a.mp4"), uploadId));
+        assertEquals(-1, storage.getObjectSize(objectName("video/a.mp4")));
+    }
+
+    @Test
+    void onlyLocalBackendsExposeAPath() throws Exception {
+        storage.uploadFile(new ByteArrayInputStream(bytes(10)), 10, objectName("image/a.jpg"), "image/jpeg");
+
+        // a path is never handed out for an object that does not exist
+        assertNull(storage.getLocalPath(objectName("image/missing.jpg")));
+        assertTrue(storage.getLocalPath(objectName("image/a.jpg")) == null || storage.getLocalPath(objectName("image/a.jpg")).toFile().length() == 10);
+    }
+
+    protected String objectName(String name) {
+        return prefix + name;
+    }
+
+    protected byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    protected static byte[] read(InputStream inputStream) throws Exception {
+        try (inputStream) {
+            return inputStream.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.setec.resource.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// files are built box by box, chunks hold distinct random bytes so a wrong offset shows
+class Mp4FastStartTest {
+
+    private static final Set<String> CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl");
+
+    private static final int CHUNK_SIZE = 100;
+
+    private static final byte[] FTYP = box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1), new byte[4]);
+
+    @TempDir
+    Path dir;
+
+    private final byte[] chunks = new byte[4 * CHUNK_SIZE];
+
+    {
+        new Random(42).nextBytes(chunks);
+    }
+
+    @Test
+    void movesMoovInFrontAndPatchesStcoAndCo64() throws IOException {
+        int chunksAt = FTYP.length + 8;
+        byte[] moov = moov(trak(stco(chunksAt, chunksAt + CHUNK_SIZE)),
+                trak(co64(chunksAt + 2L * CHUNK_SIZE, chunksAt + 3L * CHUNK_SIZE)));
+        Path source = write(FTYP, box("mdat", chunks), moov);
+
+        Path target = rewrite(source);
+
+        byte[] rewritten = Files.readAllBytes(target);
+        assertEquals(Files.size(source), rewritten.length);
+        assertEquals("moov", typeAt(rewritten, FTYP.length));
+        assertFalse(Mp4FastStart.needsFastStart(new ByteArrayInputStream(rewritten)));
+        assertChunksMoved(source, target, moov.length);
+    }
+
+    @Test
+    void handlesAMdatWithA64BitSize() throws IOException {
+        int chunksAt = FTYP.length + 16;
+        byte[] moov = moov(trak(stco(chunksAt, chunksAt + CHUNK_SIZE, chunksAt + 2 * CHUNK_SIZE)));
+        Path source = write(FTYP, largeBox("mdat", chunks), moov);
+
+        Path target = rewrite(source);
+
+        assertChunksMoved(source, target, moov.length);
+    }
+
+    @Test
+    void givesASizeZeroMoovItsRealSizeWhenMovingIt() throws IOException {
+        int chunksAt = FTYP.length + 8;
+        byte[] moov = moov(trak(stco(chunksAt, chunksAt + 3 * CHUNK_SIZE)));
+        // size 0 means the box runs to the end of the file, true only while moov is last
+        ByteBuffer.wrap(moov).putInt(0, 0);
+        Path source = write(FTYP, box("mdat", chunks), moov);
+
+        Path target = rewrite(source);
+
+        byte[] rewritten = Files.readAllBytes(target);
+        assertEquals(moov.length, ByteBuffer.wrap(rewritten).getInt(FTYP.length));
+        assertChunksMoved(source, target, moov.length);
+    }
+
+    @Test
+    void leavesFragmentedFilesAsTheyAre() throws IOException {
+        int chunksAt = FTYP.length + 8;
+        Path source = write(FTYP, box("mdat", chunks), moov(trak(stco(chunksAt))), box("moof", new byte[16]), box("mdat", chunks));
+        Path target = dir.resolve("target.mp4");
+
+        assertFalse(Mp4FastStart.rewrite(source, target));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void leavesFastStartFilesAsTheyAre() throws IOException {
+        byte[] moov = moov(trak(stco(0)));
+        int chunksAt = FTYP.length + moov.length + 8;
+        Path source = write(FTYP, moov(trak(stco(chunksAt))), box("mdat", chunks));
+        Path target = dir.resolve("target.mp4");
+
+        try (var inputStream = Files.newInputStream(source)) {
+            assertFalse(Mp4FastStart.needsFastStart(inputStream));
+        }
+        assertFalse(Mp4FastStart.rewrite(source, target));
+        assertFalse(Files.exists(target));
+    }
+
+    @Test
+    void refusesWhenAnStcoOffsetWouldNoLongerFitIn32Bits() throws IOException {
+        // a sparse 4 GiB mdat, its last chunk sits right below the 32 bit limit
+        long mdatSize = 0x1_0000_0000L;
+        long lastChunk = 0xFFFF_FFF0L;
+        byte[] moov = moov(trak(stco(FTYP.length + 16, lastChunk)));
+
+        Path source = dir.resolve("source.mp4");
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(FTYP));
+            channel.write(ByteBuffer.allocate(16).putInt(1).put("mdat".getBytes(StandardCharsets.ISO_8859_1)).putLong(mdatSize).flip());
+            channel.write(ByteBuffer.wrap(moov), FTYP.length + mdatSize);
+        }
+        Path target = dir.resolve("target.mp4");
+
+        try (var inputStream = Files.newInputStream(source)) {
+            assertTrue(Mp4FastStart.needsFastStart(inputStream));
+        }
+        assertFalse(Mp4FastStart.rewrite(source, target));
+        assertFalse(Files.exists(target));
+    }
+
+    private Path rewrite(Path source) throws IOException {
+        try (var inputStream = Files.newInputStream(source)) {
+            assertTrue(Mp4FastStart.needsFastStart(inputStream));
+        }
+        Path target = dir.resolve("target.mp4");
+        assertTrue(Mp4FastStart.rewrite(source, target));
+        return target;
+    }
+
+    // every chunk offset moved by the moov size and still points at the same sample bytes
+    private static void assertChunksMoved(Path source, Path target, int moovSize) throws IOException {
+        byte[] original = Files.readAllBytes(source);
+        byte[] rewritten = Files.readAllBytes(target);
+        List<Long> before = chunkOffsets(original);
+        List<Long> after = chunkOffsets(rewritten);
+
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            int from = before.get(i).intValue();
+            int to = after.get(i).intValue();
+            assertEquals(from + moovSize, to);
+            assertArrayEquals(Arrays.copyOfRange(original, from, from + CHUNK_SIZE), Arrays.copyOfRange(rewritten, to, to + CHUNK_SIZE));
+        }
+    }
+
+    private static List<Long> chunkOffsets(byte[] file) {
+        List<Long> offsets = new ArrayList<>();
+        collectChunkOffsets(ByteBuffer.wrap(file), 0, file.length, offsets);
+        return offsets;
+    }
+
+    private static void collectChunkOffsets(ByteBuffer data, int start, int end, List<Long> offsets) {
+        int position = start;
+        while (position + 8 <= end) {
+            long size = Integer.toUnsignedLong(data.getInt(position));
+            String type = typeAt(data.array(), position);
+            int headerSize = 8;
+            if (size == 1) {
+                size = data.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            int payload = position + headerSize;
+
+            if (CONTAINERS.contains(type)) {
+                collectChunkOffsets(data, payload, (int) (position + size), offsets);
+            } else if (type.equals("stco") || type.equals("co64")) {
+                int count = data.getInt(payload + 4);
+                for (int i = 0; i < count; i++) {
+                    offsets.add(type.equals("co64")
+                            ? data.getLong(payload + 8 + i * 8)
+                            : Integer.toUnsignedLong(data.getInt(payload + 8 + i * 4)));
+                }
+            }
+            position += (int) size;
+        }
+    }
+
+    private static String typeAt(byte[] file, int offset) {
+        return new String(file, offset + 4, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    private Path write(byte[]... boxes) throws IOException {
+        Path source = dir.resolve("source.mp4");
+        Files.write(source, concat(boxes));
+        return source;
+    }
+
+    private static byte[] moov(byte[]... traks) {
+        return box("moov", traks);
+    }
+
+    private static byte[] trak(byte[] chunkOffsets) {
+        return box("trak", box("mdia", box("minf", box("stbl", chunkOffsets))));
+    }
+
+    private static byte[] stco(long... offsets) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + offsets.length * 4).putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            payload.putInt((int) offset);
+        }
+        return box("stco", payload.array());
+    }
+
+    private static byte[] co64(long... offsets) {
+        ByteBuffer payload = ByteBuffer.allocate(8 + offsets.length * 8).putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            payload.putLong(offset);
+        }
+        return box("co64", payload.array());
+    }
+
+    private static byte[] box(String type, byte[]... payload) {
+        byte[] content = concat(payload);
+        return ByteBuffer.allocate(8 + content.length)
+                .putInt(8 + content.length)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1))
+                .put(content)
+                .array();
+    }
+
+    private static byte[] largeBox(String type, byte[] payload) {
+        return ByteBuffer.allocate(16 + payload.length)
+                .putInt(1)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1))
+                .putLong(16 + payload.length)
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}